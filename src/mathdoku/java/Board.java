@@ -1,6 +1,7 @@
 package mathdoku.java;
 
-import javafx.geometry.VPos;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.KeyCode;
@@ -8,18 +9,25 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * Board is a square grid of a size NxN.
  * It consists of NxN number of Cells arranged one after another and grouped in cells.
  */
 public class Board extends Canvas {
+    //Long enough for any well formed puzzle, short enough to keep the window responsive
+    public static final SolveBudget DEFAULT_SOLVE_BUDGET = SolveBudget.ofTime(Duration.ofSeconds(3));
+    //Space between a Cage label and the borders of its Cell, as a part of the Cell size
+    private static final double LABEL_MARGIN = 0.04;
+
     private final Game game;
     private String puzzle;
     private GraphicsContext gc;
@@ -31,18 +39,47 @@ public class Board extends Canvas {
     private ArrayList<String> allowed;
     private ArrayList<Cage> cages = new ArrayList<>();
     private boolean mistakesMode = false;
+    private boolean mistakesAgainstSolution = false;
+    private int mistakesRequests = 0; //Counts the choices of the mistake mode, a late solution only serves the last one
     private boolean gameOver = false;
     private Toolbox.ListStack<CellVal> stack = new Toolbox.ListStack<>();
     private Toolbox.ListStack<CellVal> stackUndone = new Toolbox.ListStack<>();
     private int fontLabel = 10;
     private int fontInput = 18;
+    private Puzzle layout;
+    private SolverMetrics solverMetrics;
+    private SolverEngine solverEngine;
+    private SolveBudget solveBudget = DEFAULT_SOLVE_BUDGET;
+    private boolean notesMode = false;
+    private boolean autoRemoveNotes = true;
+    private Cage[] cageOfCell;
+    private GameJournal journal;
+    private GameState state;
+    private WinTracker winTracker;
+    private ViolationTracker violations;
+    private HintPrecomputer hints;
+    private String hintExplanation = "";
+    private GlyphCache valueGlyphs;
+    private GlyphCache labelGlyphs;
+    private GlyphCache noteGlyphs;
+    private boolean redrawScheduled = false;
+
+    //Renders the Board on the next pulse after update, then stops until the next update
+    private final AnimationTimer renderer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            redrawScheduled = false;
+            render();
+        }
+    };
 
     public Board(int size, Game game) throws IOException {
         this.size = size;
         this.gc = getGraphicsContext2D();
         this.game = game;
 
-        //Listeners to make the Board resizable
+        //Listeners to make the Board resizable (a drag fires both of them, the redraws are coalesced in update)
         widthProperty().addListener(evt -> update());
         heightProperty().addListener(evt -> update());
 
@@ -53,7 +90,7 @@ public class Board extends Canvas {
         generateAllowedNumbers();
 
         loadDefaultGame();
-        drawCages();
+        update();
     }
 
     public Board(int size, Game game, String puzzle) throws IOException {
@@ -62,7 +99,7 @@ public class Board extends Canvas {
         this.game = game;
         this.puzzle = puzzle;
 
-        //Listeners to make the Board resizable
+        //Listeners to make the Board resizable (a drag fires both of them, the redraws are coalesced in update)
         widthProperty().addListener(evt -> update());
         heightProperty().addListener(evt -> update());
 
@@ -73,7 +110,7 @@ public class Board extends Canvas {
         generateAllowedNumbers();
 
         readFile(puzzle);
-        drawCages();
+        update();
     }
 
     public Board(Game game, int size, ArrayList<String> allowed, Cell[] cells, ArrayList<Cage> cages) throws IOException {
@@ -84,43 +121,160 @@ public class Board extends Canvas {
         this.cages = cages;
         this.allowed = allowed;
 
-        //Listeners to make the Board resizable
+        //Listeners to make the Board resizable (a drag fires both of them, the redraws are coalesced in update)
         widthProperty().addListener(evt -> update());
         heightProperty().addListener(evt -> update());
 
         //Generate list of allowed number inputs
-        drawCages();
+        update();
+    }
+
+    public Board(Game game, Puzzle puzzle) {
+        this.size = puzzle.getSize();
+        this.gc = getGraphicsContext2D();
+        this.game = game;
+        this.layout = Puzzle.intern(puzzle);
+
+        //Listeners to make the Board resizable (a drag fires both of them, the redraws are coalesced in update)
+        widthProperty().addListener(evt -> update());
+        heightProperty().addListener(evt -> update());
+
+        //Generates a list of Cells
+        generateCells(size);
+
+        //Generate list of allowed number inputs
+        generateAllowedNumbers();
+
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            int[] cells = puzzle.getCageCells(i);
+            String[] cellIDs = new String[cells.length];
+            for (int j = 0; j < cells.length; j++) {
+                cellIDs[j] = Integer.toString(cells[j] + 1);
+            }
+            createCage(puzzle.getTarget(i), cellIDs);
+        }
+        update();
     }
 
     /**
-     * Redraws the Board every time the window
+     * Asks for the Board to be redrawn every time the window
      * is resized or a new event has happened.
+     * <p>
+     * The Board is only marked dirty here and redrawn once on the next pulse, however many times
+     * this is called in between (a resize, fast key repeat, several changes from one action).
      */
     public void update() {
+        if (!redrawScheduled) {
+            redrawScheduled = true;
+            renderer.start();
+        }
+    }
+
+    /**
+     * Redraws the whole Board, once per pulse at most (see update).
+     * Only draws the current values, the win is detected when they change (see putValue).
+     */
+    private void render() {
         drawGrid(size);
         drawCages();
         showValues();
+        showNotes();
         if (chosenCell != null) {
-            chooseBox(chosenCell);
+            drawChosenCell();
         }
-        winDetection();
         game.disableUndoRedo();
     }
 
     /**
-     * Shows the solution on the Board.
+     * Shows the solution on the Board, if it can be found within the SolveBudget.
+     *
+     * @return The result of the Solver, to be shown to the user if it's not solved
      */
-    public void showSolution() {
-        solve();
-        showValues();
+    public SolveResult showSolution() {
+        SolveResult result = solve();
+        update();
+        return result;
+    }
+
+    /**
+     * Changes the value of a Cell. Every change of a value goes through here,
+     * so the listeners of the GameState (such as the WinTracker) see all of them.
+     * The first change also starts the HintPrecomputer, which then follows every move.
+     *
+     * @param cell  The Cell
+     * @param value The new value (0 - empty)
+     */
+    private void putValue(Cell cell, int value) {
+        cell.setValue(value);
+        getHints();
+        getState().setValue(cell.getCellID() - 1, value);
+    }
+
+    /**
+     * Returns the GameState mirroring the values of the Cells, created with its WinTracker on first use.
+     *
+     * @return The GameState
+     */
+    private GameState getState() {
+        if (state == null) {
+            state = new GameState(getLayout());
+            for (int i = 0; i < arrayOfCells.length; i++) {
+                state.setValue(i, arrayOfCells[i].getValue());
+            }
+            winTracker = new WinTracker(state, this::win);
+            violations = new ViolationTracker(state);
+        }
+        return state;
     }
 
     /**
-     * Checks if the board is filled correctly
-     * and the user won, if so, pops up an alert.
+     * Returns the HintPrecomputer, which starts working out the solution in the background when it's created.
+     *
+     * @return The HintPrecomputer for the current SolverEngine and SolveBudget
      */
-    private void winDetection() {
-        if (checkGame() && !gameOver) {
+    private HintPrecomputer getHints() {
+        if (hints == null) {
+            hints = new HintPrecomputer(getState(), getSolverEngine(), solveBudget);
+        }
+        return hints;
+    }
+
+    /**
+     * Drops the HintPrecomputer after the SolverEngine or the SolveBudget has changed.
+     */
+    private void resetHints() {
+        if (hints != null) {
+            hints.detach();
+            hints = null;
+        }
+    }
+
+    /**
+     * Checks whether the puzzle is solved, without going over the Board again.
+     *
+     * @return true - every Cell is filled and no rule is broken, false - otherwise
+     */
+    public boolean isSolved() {
+        getState();
+        return winTracker.isSolved();
+    }
+
+    /**
+     * Returns the Zobrist hash of the current values (see GameState), kept up to date on every change.
+     *
+     * @return The hash, equal for Boards of this puzzle with the same values
+     */
+    public long getStateHash() {
+        return getState().getHash();
+    }
+
+    /**
+     * Pops up the win animation when the WinTracker sees the puzzle solved,
+     * once until the Board is cleared.
+     * The autosave is discarded every time the puzzle becomes solved, so a solved Board is never resumed.
+     */
+    private void win() {
+        if (!gameOver) {
             WinAnimation winAnimation = new WinAnimation();
             winAnimation.start(new Stage());
 
@@ -133,6 +287,10 @@ public class Board extends Canvas {
 
             gameOver = true;
         }
+        //Queued before the record of the move that solved the puzzle, the journal then keeps the file deleted
+        if (journal != null) {
+            journal.discard();
+        }
     }
 
     /**
@@ -149,14 +307,13 @@ public class Board extends Canvas {
 
         gc.clearRect(0, 0, width, height);
 
-        //If the mistakes mode is on, checks and highlights Cells with mistakes
+        //If the mistakes mode is on, highlights the mistakes the ViolationTracker keeps
         if (mistakesMode) {
-            checkRows(true);
-            checkCols(true);
-            checkCages(true);
+            drawMistakes();
         }
 
         gc.setLineWidth(4);
+        gc.setStroke(Color.BLACK);
         gc.strokeRect(0, 0, width, height);
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
@@ -175,34 +332,34 @@ public class Board extends Canvas {
     public void clear() {
         chosenCell = null;
         for (Cell cell : arrayOfCells) {
-            cell.setValue(0);
+            putValue(cell, 0);
+            cell.setNotes(0);
         }
         stack.clear();
         stackUndone.clear();
+        record(GameJournal.CLEAR_BOARD, null, 0);
         gameOver = false;
         update();
     }
 
-    /**
-     * Clears the currently chosen Cell.
-     */
-    private void clearChosenCell() {
-        chosenCell = null;
-        update();
-    }
-
     /**
      * Highlights a chosen Cell green.
      *
      * @param cell Cell to be highlighted
      */
     public void chooseBox(Cell cell) {
-        clearChosenCell();
         chosenCell = cell;
+        update();
+    }
+
+    /**
+     * Draws the green highlight of the chosen Cell.
+     */
+    private void drawChosenCell() {
         gc.setLineWidth(3);
         gc.setStroke(Color.GREEN);
-        gc.strokeRect(cell.getCoordinates()[0] * cellWidth,
-                cell.getCoordinates()[1] * cellHeight, cellWidth, cellHeight);
+        gc.strokeRect(chosenCell.getCoordinates()[0] * cellWidth,
+                chosenCell.getCoordinates()[1] * cellHeight, cellWidth, cellHeight);
     }
 
     /**
@@ -214,6 +371,9 @@ public class Board extends Canvas {
         if (keyEvent != null) {
             if (allowed.contains(keyEvent.getText()) && chosenCell != null) {
                 setCellValue(chosenCell, Integer.parseInt(keyEvent.getText()));
+            } else if (keyEvent.getCode() == KeyCode.N) {
+                toggleNotesMode();
+                game.highlightNotes(notesMode);
             } else if (keyEvent.getCode() == KeyCode.BACK_SPACE) {
                 clearCellValue();
             } else if (keyEvent.getCode() == KeyCode.RIGHT) {
@@ -301,27 +461,88 @@ public class Board extends Canvas {
     }
 
     /**
-     * Clears the value of the chosen Cell.
+     * Clears the value of the chosen Cell (or its notes in the notes mode).
      */
     public void clearCellValue() {
         if (chosenCell != null) {
-            chosenCell.setValue(0);
+            if (notesMode) {
+                chosenCell.setNotes(0);
+                record(GameJournal.CLEAR_NOTES, chosenCell, 0);
+            } else {
+                putValue(chosenCell, 0);
+                record(GameJournal.CLEAR, chosenCell, 0);
+            }
             update();
         }
     }
 
     /**
      * Sets the given value to the given Cell.
+     * In the notes mode the value is noted in (or removed from) an empty Cell instead.
      *
      * @param cell The Cell for the value to be set
      * @param value The value to be set
      */
     public void setCellValue(Cell cell, int value) {
-        cell.setValue(value);
+        if (cell == null) {
+            return;
+        }
+        if (notesMode) {
+            if (cell.getValue() == 0) {
+                cell.toggleNote(value);
+                record(GameJournal.NOTE, cell, value);
+                update();
+            }
+            return;
+        }
+        putValue(cell, value);
         stack.push(new CellVal(cell, value));
+        if (autoRemoveNotes) {
+            removeNotes(cell, value);
+        }
+        record(autoRemoveNotes ? GameJournal.VALUE_REMOVING_NOTES : GameJournal.VALUE, cell, value);
         update();
     }
 
+    /**
+     * Removes the value from the notes of the row, the column and the Cage of the given Cell.
+     * Only those Cells are visited, so it takes the same time whatever else is noted on the Board.
+     *
+     * @param cell  The Cell the value was placed in
+     * @param value The placed value
+     */
+    private void removeNotes(Cell cell, int value) {
+        int index = cell.getCellID() - 1;
+        int rowStart = index - index % size;
+        for (int i = 0; i < size; i++) {
+            arrayOfCells[rowStart + i].removeNote(value);
+            arrayOfCells[index % size + i * size].removeNote(value);
+        }
+        Cage cage = getCageOfCell()[index];
+        if (cage != null) {
+            for (Cell cageCell : cage.getCells()) {
+                cageCell.removeNote(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the Cage of every Cell (index = CellID - 1, null - the Cell is in no Cage).
+     *
+     * @return The Cages of the Cells
+     */
+    private Cage[] getCageOfCell() {
+        if (cageOfCell == null) {
+            cageOfCell = new Cage[arrayOfCells.length];
+            for (Cage cage : cages) {
+                for (Cell cell : cage.getCells()) {
+                    cageOfCell[cell.getCellID() - 1] = cage;
+                }
+            }
+        }
+        return cageOfCell;
+    }
+
     /**
      * Pops the last value inputted from the stack
      * and pushes it onto another stack (for future redos).
@@ -331,6 +552,7 @@ public class Board extends Canvas {
             CellVal cellVal = stack.pop();
             stackUndone.push(cellVal);
             setLastVal(cellVal.getCell());
+            record(GameJournal.UNDO, null, 0);
             update();
         }
     }
@@ -344,6 +566,7 @@ public class Board extends Canvas {
             CellVal cellVal = stackUndone.pop();
             stack.push(cellVal);
             setLastVal(cellVal.getCell());
+            record(GameJournal.REDO, null, 0);
             update();
         }
     }
@@ -362,7 +585,7 @@ public class Board extends Canvas {
                 lastVal = cellVal.getValue();
             }
         }
-        cell.setValue(lastVal);
+        putValue(cell, lastVal);
     }
 
     /**
@@ -384,175 +607,114 @@ public class Board extends Canvas {
     }
 
     /**
-     * Sets all the required font parameters and given font size.
+     * Creates the GlyphCaches for the current font sizes, if they haven't been created yet.
+     * The values and Cage labels are stroked in black, the notes are filled in grey.
+     */
+    private void createGlyphCaches() {
+        if (valueGlyphs == null) {
+            valueGlyphs = new GlyphCache(Font.font("Verdana", FontWeight.LIGHT, fontInput), Color.BLACK, 2);
+            labelGlyphs = new GlyphCache(Font.font("Verdana", FontWeight.LIGHT, fontLabel), Color.BLACK, 1);
+            noteGlyphs = new GlyphCache(Font.font("Verdana", FontWeight.NORMAL, fontLabel), Color.DIMGRAY, 0);
+        }
+    }
+
+    /**
+     * Returns the output scale of the screen the Board is shown on, for the GlyphCaches.
      *
-     * @param fontSize Font size to be used
+     * @return The scale (1 - no scaling, or the Board is not shown yet)
      */
-    private void setTextStrokeParameters(int fontSize) {
-        gc.setLineWidth(2);
-        gc.setStroke(Color.BLACK);
-        gc.setTextAlign(TextAlignment.CENTER);
-        gc.setFont(Font.font("Verdana", FontWeight.LIGHT, fontSize));
-        gc.setTextBaseline(VPos.CENTER);
+    private double getOutputScale() {
+        if (getScene() == null || getScene().getWindow() == null) {
+            return 1;
+        }
+        return getScene().getWindow().getOutputScaleX();
     }
 
     /**
      * Prints the values of all Cells inside those Cells on the board.
      */
     private void showValues() {
-        setTextStrokeParameters(fontInput);
+        createGlyphCaches();
+        double scale = getOutputScale();
         for (Cell cell : arrayOfCells) {
             if (cell.getValue() > 0) {
-                gc.strokeText(Integer.toString(cell.getValue()),
+                valueGlyphs.draw(gc, Integer.toString(cell.getValue()),
                         cell.getCoordinates()[0] * cellWidth + cellWidth / 2,
-                        cell.getCoordinates()[1] * cellHeight + cellHeight / 2);
+                        cell.getCoordinates()[1] * cellHeight + cellHeight / 2, scale);
             }
         }
     }
 
     /**
-     * Draws a border on the given side of the given Cell.
-     *
-     * @param side The side of the Cell for the border to be drawn on
-     * @param cell The Cell for the border to be drawn on
+     * Prints the notes of every empty Cell as a small grid of digits
+     * (2x2 on Boards up to 4x4, 3x3 on larger ones), below the Cage label.
      */
-    private void drawBorder(String side, Cell cell) {
-        gc.setStroke(Color.BLACK);
-        gc.setLineWidth(4);
-        double cellX = cell.getCoordinates()[0] * cellWidth;
-        double cellY = cell.getCoordinates()[1] * cellHeight;
+    private void showNotes() {
+        int perRow = size <= 4 ? 2 : 3;
+        double noteWidth = cellWidth / perRow;
+        double noteHeight = cellHeight * 0.75 / perRow;
 
-        switch (side) {
-            case "top":
-                gc.strokeLine(cellX, cellY, cellX + cellWidth, cellY);
-                break;
-            case "bottom":
-                gc.strokeLine(cellX, cellY + cellHeight, cellX + cellWidth, cellY + cellHeight);
-                break;
-            case "left":
-                gc.strokeLine(cellX, cellY, cellX, cellY + cellHeight);
-                break;
-            case "right":
-                gc.strokeLine(cellX + cellWidth, cellY, cellX + cellWidth, cellY + cellHeight);
-                break;
+        createGlyphCaches();
+        double scale = getOutputScale();
+        for (Cell cell : arrayOfCells) {
+            if (cell.getValue() != 0 || cell.getNotes() == 0) {
+                continue;
+            }
+            double cellX = cell.getCoordinates()[0] * cellWidth;
+            double cellY = cell.getCoordinates()[1] * cellHeight + cellHeight * 0.25;
+            for (int value = 1; value <= size; value++) {
+                if (cell.hasNote(value)) {
+                    int position = value - 1;
+                    noteGlyphs.draw(gc, Integer.toString(value),
+                            cellX + (position % perRow) * noteWidth + noteWidth / 2,
+                            cellY + (position / perRow) * noteHeight + noteHeight / 2, scale);
+                }
+            }
         }
     }
 
     /**
-     * Analyses the given Cage and draws a thicker border around it.
+     * Draws thick borders on the sides of a Cell that lie on the border of its Cage.
      *
-     * @param cage The Cage for the border to be drawn around
+     * @param cell    The Cell for the borders to be drawn on
+     * @param borders Bitmask of the sides (see Puzzle.getCageBorders)
      */
-    private void drawCage(Cage cage) {
-        //ArrayList of Cells that are in the given Cage
-        ArrayList<Cell> cageCells = cage.getCells();
-        //A Matrix of all Cells on the board (rows separated)
-        ArrayList<List<Cell>> matrix = Toolbox.getMatrix(arrayOfCells, size);
-        //A transpose of all Cells on the board (columns separated)
-        List<List<Cell>> transpose = Toolbox.getTranspose(matrix);
+    private void drawBorders(Cell cell, int borders) {
+        double cellX = cell.getCoordinates()[0] * cellWidth;
+        double cellY = cell.getCoordinates()[1] * cellHeight;
 
-        //Draws a top border for every Cell(from a Cage) that's the highest in every column
-        for (List<Cell> row : transpose) {
-            for (Cell cell : row) {
-                if (cageCells.contains(cell)) {
-                    drawBorder("top", cell);
-                    break;
-                }
-            }
+        if ((borders & Puzzle.BORDER_TOP) != 0) {
+            gc.strokeLine(cellX, cellY, cellX + cellWidth, cellY);
         }
-
-        //Draws a bottom border for every Cell(from a Cage) that's the lowest in every column
-        for (List<Cell> row : transpose) {
-            Cell inCage = null;
-            for (Cell cell : row) {
-                if (cageCells.contains(cell)) {
-                    inCage = cell;
-                }
-            }
-            if (inCage != null) {
-                drawBorder("bottom", inCage);
-            }
+        if ((borders & Puzzle.BORDER_BOTTOM) != 0) {
+            gc.strokeLine(cellX, cellY + cellHeight, cellX + cellWidth, cellY + cellHeight);
         }
-
-        //Draws a left border for every Cell(from a Cage) that's the closest in every row
-        for (List<Cell> row : matrix) {
-            for (Cell cell : row) {
-                if (cageCells.contains(cell)) {
-                    drawBorder("left", cell);
-                    break;
-                }
-            }
+        if ((borders & Puzzle.BORDER_LEFT) != 0) {
+            gc.strokeLine(cellX, cellY, cellX, cellY + cellHeight);
         }
-
-        //Draws a right border for every Cell(from a Cage) that's the furthest in every row
-        for (List<Cell> row : matrix) {
-            Cell inCage = null;
-            for (Cell cell : row) {
-                if (cageCells.contains(cell)) {
-                    inCage = cell;
-                }
-            }
-            if (inCage != null) {
-                drawBorder("right", inCage);
-            }
+        if ((borders & Puzzle.BORDER_RIGHT) != 0) {
+            gc.strokeLine(cellX + cellWidth, cellY, cellX + cellWidth, cellY + cellHeight);
         }
-
-        //Draws a target on the Cage
-        drawCageLabels(cage);
     }
 
     /**
      * Draws a target label for the cage in the first Cell of the Cage.
+     * The label sits in the top left corner, a small margin away from the borders.
      *
-     * @param cage The Cage for the target to be drawn for
+     * @param cage  The Cage for the target to be drawn for
+     * @param first The first Cell of the Cage (see Puzzle.getLabelCell)
+     * @param scale The output scale of the screen
      */
-    private void drawCageLabels(Cage cage) {
-        //Sorts the cage to find the first Cell of the Cage
-        List<Cell> cellsSorted = new ArrayList<>(cage.getCells());
-        cellsSorted.sort(cage.getComparator());
-        Cell firstCell = cellsSorted.get(0);
-        double cageStartX = firstCell.getCoordinates()[0] * cellWidth;
-        double cageStartY = firstCell.getCoordinates()[1] * cellHeight;
-
-        //Sets the font size for the target
-        setTextStrokeParameters(fontLabel);
-        gc.setLineWidth(1);
-
-        //Changes the "padding" for the label depending on the board size
-        int divisorX = 0;
-        int divisorY = 0;
-        switch (size) {
-            case 2:
-                divisorX = 10;
-                divisorY = 10;
-                break;
-            case 3:
-                divisorX = 8;
-                divisorY = 8;
-                break;
-            case 4:
-                divisorX = 7;
-                divisorY = 7;
-                break;
-            case 5:
-                divisorX = 4;
-                divisorY = 4;
-                break;
-            case 6:
-                divisorX = 4;
-                divisorY = 5;
-                break;
-            case 7:
-            case 8:
-                divisorX = 3;
-                divisorY = 3;
-                break;
-        }
-
-        //Draws the label itself
-        gc.strokeText(cage.getTarget(),
-                cageStartX + cellWidth / divisorX,
-                cageStartY + cellHeight / divisorY);
+    private void drawCageLabel(Cage cage, Cell first, double scale) {
+        double cageStartX = first.getCoordinates()[0] * cellWidth;
+        double cageStartY = first.getCoordinates()[1] * cellHeight;
+        double margin = Math.min(cellWidth, cellHeight) * LABEL_MARGIN;
+
+        //Draws the label itself, from an image rendered once per font size
+        String target = cage.getTarget();
+        labelGlyphs.draw(gc, target,
+                cageStartX + margin + labelGlyphs.getWidth(target, scale) / 2,
+                cageStartY + margin + labelGlyphs.getHeight(target, scale) / 2, scale);
     }
 
     /**
@@ -638,11 +800,21 @@ public class Board extends Canvas {
     }
 
     /**
-     * Iteratively draws cages.
+     * Draws the thick borders around the Cages and their labels.
+     * Where the borders and labels go is worked out once by the Puzzle, so this only draws.
      */
     private void drawCages() {
-        for (Cage cage : cages) {
-            drawCage(cage);
+        Puzzle puzzle = getLayout();
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(4);
+        for (int cell = 0; cell < arrayOfCells.length; cell++) {
+            drawBorders(arrayOfCells[cell], puzzle.getCageBorders(cell));
+        }
+
+        createGlyphCaches();
+        double scale = getOutputScale();
+        for (int i = 0; i < cages.size(); i++) {
+            drawCageLabel(cages.get(i), arrayOfCells[puzzle.getLabelCell(i)], scale);
         }
     }
 
@@ -674,84 +846,32 @@ public class Board extends Canvas {
     }
 
     /**
-     * Checks if the puzzle is fully and correctly completed.
-     *
-     * @return true - puzzle is fully and correctly completed, false otherwise
-     */
-    private boolean checkGame() {
-        for (Cell cell : arrayOfCells) {
-            if (cell.getValue() == 0) {
-                return false;
-            }
-        }
-        return checkCages(false)
-                && checkRows(false)
-                && checkCols(false);
-    }
-
-    /**
-     * Checks rows to be correctly filled.
-     *
-     * @param toHighlight If true - will highlight rows with mistakes, false - won't highlight
-     * @return true - If rows are correctly filled, false - otherwise
+     * Highlights the rows, columns and Cages that break a rule,
+     * or the Cells that differ from the solution if the mistakes are shown against it.
      */
-    private boolean checkRows(boolean toHighlight) {
-        boolean correct = true;
-        for (int i = 0; i < arrayOfCells.length; i = i + size) {
-            Cell[] row = Arrays.copyOfRange(arrayOfCells, i, i + size);
-            if (findDuplicates(row)) {
-                if (toHighlight) {
-                    highlightRow(i);
+    private void drawMistakes() {
+        getState();
+        if (mistakesAgainstSolution) {
+            for (int i = 0; i < arrayOfCells.length; i++) {
+                if (violations.isWrong(i)) {
+                    highlightCell(arrayOfCells[i]);
                 }
-                correct = false;
             }
+            return;
         }
-        return correct;
-    }
-
-    /**
-     * Checks columns to be correctly filled.
-     *
-     * @param toHighlight If true - will highlight columns with mistakes, false - won't highlight
-     * @return true - If columns are correctly filled, false - otherwise
-     */
-    private boolean checkCols(boolean toHighlight) {
-        boolean correct = true;
         for (int i = 0; i < size; i++) {
-            Cell[] col = new Cell[size];
-            int j = 0; //position in a col
-            for (int k = 0; k < arrayOfCells.length; k = k + size) {
-                col[j] = arrayOfCells[i + k];
-                j++;
-            }
-            if (findDuplicates(col)) {
-                if (toHighlight) {
-                    highlightCol(i);
-                }
-                correct = false;
+            if (violations.isRowViolated(i)) {
+                highlightRow(i * size);
+            }
+            if (violations.isColViolated(i)) {
+                highlightCol(i);
             }
         }
-        return correct;
-
-    }
-
-    /**
-     * Checks Cages to be correctly filled.
-     *
-     * @param toHighlight If true - will highlight Cages with mistakes, false - won't highlight
-     * @return true - If Cages are correctly filled, false - otherwise
-     */
-    private boolean checkCages(boolean toHighlight) {
-        boolean correct = true;
-        for (Cage cage : cages) {
-            if (!cage.checkCage()) {
-                if (toHighlight) {
-                    highlightCage(cage);
-                }
-                correct = false;
+        for (int i = 0; i < cages.size(); i++) {
+            if (violations.isCageViolated(i)) {
+                highlightCage(cages.get(i));
             }
         }
-        return correct;
     }
 
     /**
@@ -783,29 +903,20 @@ public class Board extends Canvas {
      * @param cage The Cage to be highlighted
      */
     private void highlightCage(Cage cage) {
-        gc.setFill(Color.LIGHTPINK);
         for (Cell cell : cage.getCells()) {
-            gc.fillRect(cell.getCoordinates()[0] * cellWidth,
-                    cell.getCoordinates()[1] * cellHeight, cellWidth, cellHeight);
+            highlightCell(cell);
         }
-
     }
 
     /**
-     * Travers an array of Cells and finds duplicates.
+     * Highlights a Cell pink.
      *
-     * @param cells An array of Cells to be traversed.
-     * @return true - if duplicates are found, false otherwise
+     * @param cell The Cell to be highlighted
      */
-    private boolean findDuplicates(Cell[] cells) {
-        Set<Integer> lump = new HashSet<>();
-        for (Cell cell : cells) {
-            if (lump.contains(cell.getValue()) && cell.getValue() != 0) {
-                return true;
-            }
-            lump.add(cell.getValue());
-        }
-        return false;
+    private void highlightCell(Cell cell) {
+        gc.setFill(Color.LIGHTPINK);
+        gc.fillRect(cell.getCoordinates()[0] * cellWidth,
+                cell.getCoordinates()[1] * cellHeight, cellWidth, cellHeight);
     }
 
     /**
@@ -816,6 +927,55 @@ public class Board extends Canvas {
         update();
     }
 
+    /**
+     * Chooses what the mistake mode shows: the rows, columns and Cages that break a rule,
+     * or the Cells whose value is not the one in the solution.
+     * The solution is found once within the SolveBudget on the background thread of the HintPrecomputer,
+     * the mode is switched on the JavaFX thread once it's there. If it can't be found the mode is left as it is.
+     *
+     * @param againstSolution true - Cells that differ from the solution, false - broken rules
+     * @return The result of the Solver if the solution is needed (null otherwise), completed on the JavaFX thread
+     */
+    public CompletableFuture<SolveResult> setMistakesAgainstSolution(boolean againstSolution) {
+        getState();
+        int request = ++mistakesRequests;
+        if (!againstSolution) {
+            showMistakesAgainst(null);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HintPrecomputer precomputer = getHints();
+        CompletableFuture<SolveResult> done = new CompletableFuture<>();
+        precomputer.solveAsync().whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+                return;
+            }
+            solverMetrics = result.getMetrics();
+            //Only the latest choice counts, and only while the HintPrecomputer is still the Board's one
+            if (result.isSolved() && request == mistakesRequests && precomputer == hints) {
+                showMistakesAgainst(precomputer.getSolution());
+            }
+            done.complete(result);
+        }));
+        return done;
+    }
+
+    /**
+     * Switches the mistake mode between broken rules and differences from the solution.
+     *
+     * @param solution The solution, or null for broken rules
+     */
+    private void showMistakesAgainst(int[] solution) {
+        mistakesAgainstSolution = solution != null;
+        violations.setSolution(solution);
+        update();
+    }
+
+    public boolean isMistakesAgainstSolution() {
+        return mistakesAgainstSolution;
+    }
+
     /**
      * Sets a font size for the Board.
      *
@@ -836,87 +996,224 @@ public class Board extends Canvas {
                 fontLabel = 13;
                 break;
         }
+
+        //The glyphs are rendered again with the new sizes
+        valueGlyphs = null;
+        labelGlyphs = null;
+        noteGlyphs = null;
         update();
     }
 
     /**
-     * Solves the puzzle using a backtracking algorithm.
+     * Solves the puzzle from the current values using the chosen SolverEngine, within the SolveBudget.
      *
-     * @return true - solved, false - otherwise
+     * @return The result of the Solver
      */
-    private boolean solve() {
-        for (Cell arrayOfCell : arrayOfCells) {
-            if (arrayOfCell.getValue() == 0) {
-                for (String s : allowed) {
-                    arrayOfCell.setValue(Integer.parseInt(s));
-                    if (checkCols(false)
-                            && checkRows(false)
-                            && checkCages(false)
-                            && solve()) {
-                        return true;
-                    } else {
-                        arrayOfCell.setValue(0);
-                    }
+    private SolveResult solve() {
+        int[] grid = new int[arrayOfCells.length];
+        for (int i = 0; i < arrayOfCells.length; i++) {
+            grid[i] = arrayOfCells[i].getValue();
+        }
+
+        SolverBackend solver = getSolverEngine().create(getLayout());
+        SolveResult result = solver.solve(grid, solveBudget);
+        solverMetrics = result.getMetrics();
+
+        if (result.isSolved()) {
+            for (int i = 0; i < arrayOfCells.length; i++) {
+                if (arrayOfCells[i].getValue() != grid[i]) {
+                    putValue(arrayOfCells[i], grid[i]);
+                    record(GameJournal.FILL, arrayOfCells[i], grid[i]);
                 }
-                return false;
             }
         }
-        return true;
+        return result;
     }
 
     /**
-     * Solves the puzzle, then corrects one value that is not correct.
+     * Streams the solutions that agree with the current values, found lazily as they are consumed.
      *
+     * @return The solutions, every one as the values of all Cells (index = CellID - 1)
      */
-    public void showHint() {
-
-        //Saves the current values of all Cells to an ArrayList
-        ArrayList<CellVal> lastStateOfCells = new ArrayList<>();
+    public Stream<int[]> solutions() {
+        int[] grid = new int[arrayOfCells.length];
+        for (int i = 0; i < arrayOfCells.length; i++) {
+            grid[i] = arrayOfCells[i].getValue();
+        }
+        return SolutionSpliterator.stream(getLayout(), grid, false);
+    }
 
-        for (Cell cell : arrayOfCells) {
-            int value = cell.getValue();
-            lastStateOfCells.add(new CellVal(cell, value));
+    /**
+     * Corrects a value that is not right, or fills in the next value that can be worked out by logic
+     * (see HintPrecomputer), using the hint precomputed after the last change if there is one.
+     *
+     * @return The result of the Solver, to be shown to the user if it's not solved
+     */
+    public SolveResult showHint() {
+        //Usually precomputed in the background after the last change
+        HintPrecomputer.Hint hint = getHints().hintFor(getState().toGrid());
+        SolveResult result = hint.getResult();
+        solverMetrics = result.getMetrics();
+        hintExplanation = hint.getExplanation();
+        if (hint.getCell() >= 0) {
+            Cell cell = arrayOfCells[hint.getCell()];
+            putValue(cell, hint.getValue());
+            stack.push(new CellVal(cell, hint.getValue()));
+            record(GameJournal.HINT, cell, hint.getValue());
+            chosenCell = cell;
         }
+        return result;
+    }
 
-        for (Cell cell : arrayOfCells) {
-            cell.setValue(0);
+    /**
+     * Returns why the last hint is right, to be shown to the player.
+     *
+     * @return The explanation, empty if there was no hint
+     */
+    public String getHintExplanation() {
+        return hintExplanation;
+    }
+
+    /**
+     * Starts autosaving every action on the Board into the GameJournal, from the current values.
+     *
+     * @param difficulty Difficulty level of the Game, to be resumed with the same one
+     */
+    public void startAutosave(int difficulty) {
+        GameJournal.State state = new GameJournal.State(getLayout(), difficulty);
+        for (int i = 0; i < arrayOfCells.length; i++) {
+            state.getValues()[i] = arrayOfCells[i].getValue();
+            state.getNotes()[i] = arrayOfCells[i].getNotes();
+        }
+        for (CellVal cellVal : stack.getList()) {
+            state.getHistory().add(new int[]{cellVal.getCell().getCellID() - 1, cellVal.getValue()});
+        }
+        for (CellVal cellVal : stackUndone.getList()) {
+            state.getUndone().add(new int[]{cellVal.getCell().getCellID() - 1, cellVal.getValue()});
         }
+        journal = GameJournal.start(state);
+    }
 
-        //Solves the puzzle and saves the values in another ArrayList
-        solve();
-        ArrayList<CellVal> solvedCells = new ArrayList<>();
-        for (Cell cell : arrayOfCells) {
-            int value = cell.getValue();
-            solvedCells.add(new CellVal(cell, value));
+    /**
+     * Writes the remaining autosave records, before the Game is left.
+     */
+    public void stopAutosave() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
         }
+    }
 
-        for (Cell cell : arrayOfCells) {
-            cell.setValue(0);
+    /**
+     * Puts the values, the notes and the undo/redo history of a saved Game on the Board.
+     *
+     * @param state The saved state
+     */
+    public void restore(GameJournal.State state) {
+        for (int i = 0; i < arrayOfCells.length; i++) {
+            putValue(arrayOfCells[i], state.getValues()[i]);
+            arrayOfCells[i].setNotes(state.getNotes()[i]);
+        }
+        stack.clear();
+        stackUndone.clear();
+        for (int[] move : state.getHistory()) {
+            stack.push(new CellVal(arrayOfCells[move[0]], move[1]));
+        }
+        for (int[] move : state.getUndone()) {
+            stackUndone.push(new CellVal(arrayOfCells[move[0]], move[1]));
         }
+    }
 
-        //Restore the last state of the Cells
-        for (Cell cell : arrayOfCells) {
-            for (CellVal cellVal : lastStateOfCells) {
-                if (cell.equals(cellVal.getCell())) {
-                    int value = cellVal.getValue();
-                    cell.setValue(value);
-                }
-            }
+    /**
+     * Queues an action for the autosave journal, if autosaving is on.
+     *
+     * @param type  Type of the action (see GameJournal)
+     * @param cell  The Cell of the action, or null if it has none
+     * @param value The value of the action
+     */
+    private void record(byte type, Cell cell, int value) {
+        if (journal != null) {
+            journal.record(type, cell == null ? 0 : cell.getCellID() - 1, value);
         }
+    }
 
-        //Iterates over the array of cells and compares the next value to the solved value,
-        //if it's not the same, replaces it with the correct one
-        for (Cell cell : arrayOfCells) {
-            for (CellVal cellVal : solvedCells) {
-                if (cell.getCellID() == cellVal.getCell().getCellID()
-                        && cell.getValue() != cellVal.getValue()) {
-                    cell.setValue(cellVal.getValue());
-                    stack.push(new CellVal(cell, cellVal.getValue()));
-                    chosenCell = cell;
-                    return;
-                }
-            }
+    /**
+     * Returns the layout of the Board (its Cages without values) for the Solver.
+     * Boards of the same puzzle share one instance.
+     *
+     * @return The Puzzle of the Board
+     */
+    private Puzzle getLayout() {
+        if (layout == null) {
+            layout = Puzzle.intern(Puzzle.fromCages(size, cages));
         }
+        return layout;
+    }
+
+    /**
+     * Returns the SolverEngine chosen in the options, or the fastest one for the Board size.
+     *
+     * @return The SolverEngine to be used
+     */
+    private SolverEngine getSolverEngine() {
+        return solverEngine != null ? solverEngine : SolverEngine.fastestFor(size);
+    }
+
+    /**
+     * Sets the SolverEngine used for hints and solutions.
+     *
+     * @param solverEngine The SolverEngine, or null to use the fastest one for the Board size
+     */
+    public void setSolverEngine(SolverEngine solverEngine) {
+        this.solverEngine = solverEngine;
+        resetHints();
+    }
+
+    public SolveBudget getSolveBudget() {
+        return solveBudget;
+    }
+
+    /**
+     * Sets the SolveBudget of hints and solutions.
+     *
+     * @param solveBudget The SolveBudget
+     */
+    public void setSolveBudget(SolveBudget solveBudget) {
+        this.solveBudget = solveBudget;
+        resetHints();
+    }
+
+    /**
+     * Returns the metrics of the last Solver run (from Hint or Show solution).
+     *
+     * @return The metrics, or null if the Solver hasn't been run yet
+     */
+    public SolverMetrics getSolverMetrics() {
+        return solverMetrics;
+    }
+
+    public boolean isNotesMode() {
+        return notesMode;
+    }
+
+    /**
+     * Toggles the notes mode, in which the entered values are noted in the Cells.
+     */
+    public void toggleNotesMode() {
+        notesMode = !notesMode;
+    }
+
+    public boolean isAutoRemoveNotes() {
+        return autoRemoveNotes;
+    }
+
+    /**
+     * Sets whether placing a value removes it from the notes of its row, column and Cage.
+     *
+     * @param autoRemoveNotes true - remove the notes, false - keep them
+     */
+    public void setAutoRemoveNotes(boolean autoRemoveNotes) {
+        this.autoRemoveNotes = autoRemoveNotes;
     }
 
     public Cell[] getArrayOfCells() {
@@ -942,12 +1239,13 @@ public class Board extends Canvas {
         return getHeight();
     }
 
+    //Worked out from the current size, as the Board might not have been redrawn since a resize yet
     public double getCellWidth() {
-        return cellWidth;
+        return getWidth() / size;
     }
 
     public double getCellHeight() {
-        return cellHeight;
+        return getHeight() / size;
     }
 
 }
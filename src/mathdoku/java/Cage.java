@@ -2,7 +2,6 @@ package mathdoku.java;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * MathDoku Cells are grouped in Cages (which can be of any size ranging from 1 to NxN,
@@ -25,19 +24,11 @@ public class Cage {
         this.target = target;
         this.cells = cells;
         this.size = cells.size();
-
-        for (Cell cell : cells) {
-            cell.setInCage(true);
-        }
     }
 
     public Cage(ArrayList<Cell> cells) {
         this.cells = cells;
         this.size = cells.size();
-
-        for (Cell cell : cells) {
-            cell.setInCage(true);
-        }
     }
 
     /**
@@ -55,63 +46,11 @@ public class Cage {
             }
         }
 
-        if (target.length() == 1) {
-            return Integer.parseInt(target) == cells.get(0).getValue();
-        }
-
-        int multiplierInt = Integer.parseInt(target.substring(0, target.length() - 1));
-        String multiplierSign = target.substring(target.length() - 1);
-        switch (multiplierSign) {
-            case "+": {
-                int total = 0;
-                for (Cell cell : cells) {
-                    total = total + cell.getValue();
-                }
-                return total == multiplierInt;
-
-            }
-            case "x": {
-                int total = 1;
-                for (Cell cell : cells) {
-                    total = total * cell.getValue();
-                }
-                return total == multiplierInt;
-
-            }
-            case "-": {
-                int total = 0;
-                List<Cell> cellsSorted = new ArrayList<Cell>(cells);
-                cellsSorted.sort(Cell::compareTo);
-                int largest = cellsSorted.get(0).getValue();
-                total = total + largest;
-
-                for (int i = 1; i < cellsSorted.size(); i++) {
-                    total = total - cellsSorted.get(i).getValue();
-                }
-
-                return total == multiplierInt;
-            }
-
-            case "\u00f7":
-            case "/": {
-                int total = 0;
-
-                List<Cell> cellsSorted = new ArrayList<Cell>(cells);
-                cellsSorted.sort(Cell::compareTo);
-                int largest = cellsSorted.get(0).getValue();
-                total = total + largest;
-
-                for (int i = 1; i < cellsSorted.size(); i++) {
-                    if (cellsSorted.get(i).getValue() == 0) {
-                        return false;
-                    }
-                    total = total / cellsSorted.get(i).getValue();
-                }
-
-                return total == multiplierInt;
-            }
+        int[] values = new int[cells.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = cells.get(i).getValue();
         }
-        return false;
+        return Operator.fromTarget(target).matches(Operator.targetValue(target), values, values.length);
     }
 
 
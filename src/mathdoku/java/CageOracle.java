@@ -0,0 +1,327 @@
+package mathdoku.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * CageOracle decides whether a partly filled Cage can still reach its target, and which candidates of its
+ * Cells are part of a filling that does, without trying the fillings one by one.
+ * <p>
+ * For every Cage, a table of states is precomputed from the operator and the target: the sum so far for +,
+ * the product so far (a divisor of the target) for x, and the largest value together with the sum/product
+ * of the others for - and ÷. The table gives the state after one more value, or -1 once the target is out
+ * of reach. Given the candidates of the Cells (a single bit for a filled Cell), the states reachable after
+ * every Cell are found going forwards, and the states the rest of the Cage can finish from going backwards.
+ * A candidate is supported if it leads from a reachable state to one that can finish.
+ * This takes Cells x states x values steps, where trying the fillings takes values ^ Cells.
+ * <p>
+ * Cells of the Cage that share a row/column are not kept different from each other,
+ * so the answer can be "feasible" for a Cage whose only fillings repeat a value in a line. It's never
+ * "infeasible" when a filling exists, so it can always prune before the exact check.
+ * <p>
+ * The tables of the last Cage checked are kept as scratch space, so a CageOracle is not thread safe.
+ */
+public class CageOracle {
+    //Cages with fewer possible fillings are quicker to try one by one than to check first
+    private static final long MIN_FILLINGS = 1024;
+
+    private final Puzzle puzzle;
+    private final int size;
+    //Per Cage: the state after one more value, index = state * (size + 1) + value, -1 if the target is out of reach
+    private final int[][] transitions;
+    private final boolean[][] accepting;
+    private final int[] starts;
+    //Reachable states before every Cell, and states the rest of the Cage can finish from
+    private boolean[][] forward = new boolean[0][];
+    private boolean[][] backward = new boolean[0][];
+    private int scratchStates;
+
+    /**
+     * Creates a CageOracle. The states of a Cage are precomputed the first time it's checked,
+     * so Cages that never are (small ones) cost nothing.
+     *
+     * @param puzzle The Puzzle of the Cages
+     */
+    public CageOracle(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+        this.transitions = new int[puzzle.getCageCount()][];
+        this.accepting = new boolean[puzzle.getCageCount()][];
+        this.starts = new int[puzzle.getCageCount()];
+    }
+
+    /**
+     * Precomputes the states of a Cage if they haven't been yet, and makes room for them in the scratch space.
+     *
+     * @param cage Index of the Cage
+     */
+    private void prepare(int cage) {
+        if (transitions[cage] != null) {
+            return;
+        }
+        buildStates(cage);
+        int cells = puzzle.getCageCells(cage).length + 1;
+        //The start state is always there, even for a target no values reach
+        int states = Math.max(1, accepting[cage].length);
+        if (cells > forward.length || states > scratchStates) {
+            scratchStates = Math.max(states, scratchStates);
+            forward = new boolean[Math.max(cells, forward.length)][scratchStates];
+            backward = new boolean[forward.length][scratchStates];
+        }
+    }
+
+    /**
+     * Fills in the states, the transitions and the accepting states of a Cage.
+     *
+     * @param cage Index of the Cage
+     */
+    private void buildStates(int cage) {
+        int cells = puzzle.getCageCells(cage).length;
+        int target = puzzle.getTargetValue(cage);
+        int[] next;
+        boolean[] accept;
+
+        switch (puzzle.getOperator(cage)) {
+            case ADD: {
+                //State = the sum so far
+                int states = Math.max(0, Math.min(target, size * cells)) + 1;
+                next = newTransitions(states);
+                for (int sum = 0; sum < states; sum++) {
+                    for (int value = 1; value <= size && sum + value < states; value++) {
+                        next[sum * (size + 1) + value] = sum + value;
+                    }
+                }
+                accept = new boolean[states];
+                accept[states - 1] = target == states - 1;
+                break;
+            }
+            case MULTIPLY: {
+                //State = index of the product so far among the divisors of the target
+                int[] divisors = divisors(target);
+                next = newTransitions(divisors.length);
+                for (int i = 0; i < divisors.length; i++) {
+                    for (int value = 1; value <= size; value++) {
+                        long product = (long) divisors[i] * value;
+                        if (product <= target && target % product == 0) {
+                            next[i * (size + 1) + value] = Arrays.binarySearch(divisors, (int) product);
+                        }
+                    }
+                }
+                accept = new boolean[divisors.length];
+                if (divisors.length > 0) {
+                    accept[divisors.length - 1] = true;
+                }
+                break;
+            }
+            case SUBTRACT:
+            case DIVIDE: {
+                //State = (largest value so far, sum/product of the other values). The others never shrink,
+                //and in the end they must be largest - target (or largest / target), so they stay small
+                boolean divide = puzzle.getOperator(cage) == Operator.DIVIDE;
+                int bound = divide ? (target > 0 ? size / target : 0) : size - target;
+                int width = Math.max(0, bound) + 1;
+                next = newTransitions((size + 1) * width);
+                accept = new boolean[(size + 1) * width];
+                for (int largest = 0; largest <= size; largest++) {
+                    for (int others = divide ? 1 : 0; others <= bound; others++) {
+                        int state = largest * width + others;
+                        for (int value = 1; value <= size; value++) {
+                            int smaller = value <= largest ? value : largest;
+                            int newOthers;
+                            if (divide) {
+                                newOthers = largest == 0 ? 1 : others * smaller;
+                            } else {
+                                newOthers = others + smaller;
+                            }
+                            if (newOthers <= bound) {
+                                next[state * (size + 1) + value] = Math.max(largest, value) * width + newOthers;
+                            }
+                        }
+                        accept[state] = largest > 0
+                                && (divide ? others * target == largest : largest - others == target);
+                    }
+                }
+                starts[cage] = divide ? 1 : 0;
+                break;
+            }
+            default: {
+                //State 0 = nothing filled, 1 = the one Cell holds the target
+                next = newTransitions(2);
+                if (target >= 1 && target <= size) {
+                    next[target] = 1;
+                }
+                accept = new boolean[]{false, cells == 1};
+                break;
+            }
+        }
+        transitions[cage] = next;
+        accepting[cage] = accept;
+    }
+
+    private int[] newTransitions(int states) {
+        int[] next = new int[states * (size + 1)];
+        Arrays.fill(next, -1);
+        return next;
+    }
+
+    /**
+     * Lists the divisors of a number in ascending order.
+     *
+     * @param n The number
+     * @return The divisors, empty if the number is not positive
+     */
+    private static int[] divisors(int n) {
+        ArrayList<Integer> small = new ArrayList<>();
+        ArrayList<Integer> large = new ArrayList<>();
+        for (int d = 1; (long) d * d <= n; d++) {
+            if (n % d == 0) {
+                small.add(d);
+                if (d != n / d) {
+                    large.add(0, n / d);
+                }
+            }
+        }
+        small.addAll(large);
+        return small.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Checks whether a Cage has so many possible fillings that restricting its candidates first
+     * is quicker than trying the fillings one by one.
+     *
+     * @param masks Candidates of the Cells of the Cage
+     * @param cells The number of Cells of the Cage
+     * @return true - the CageOracle should be asked first, false - the fillings are few enough to try
+     */
+    public static boolean isWorthAsking(int[] masks, int cells) {
+        long fillings = 1;
+        for (int i = 0; i < cells && fillings <= MIN_FILLINGS; i++) {
+            fillings *= Integer.bitCount(masks[i]);
+        }
+        return fillings > MIN_FILLINGS;
+    }
+
+    /**
+     * Checks whether a Cage can still reach its target with the given candidates.
+     *
+     * @param cage  Index of the Cage
+     * @param masks Candidates of the Cells of the Cage, in the order of Puzzle.getCageCells (bit v set - value v)
+     * @return false - no filling reaches the target, true - some filling might (see the class comment)
+     */
+    public boolean isFeasible(int cage, int[] masks) {
+        prepare(cage);
+        int[] next = transitions[cage];
+        boolean[] accept = accepting[cage];
+        int states = accept.length;
+        int cells = puzzle.getCageCells(cage).length;
+
+        Arrays.fill(forward[0], 0, states, false);
+        forward[0][starts[cage]] = true;
+        for (int i = 0; i < cells; i++) {
+            boolean[] from = forward[i];
+            boolean[] to = forward[i + 1];
+            Arrays.fill(to, 0, states, false);
+            boolean any = false;
+            for (int state = 0; state < states; state++) {
+                if (!from[state]) {
+                    continue;
+                }
+                for (int options = masks[i]; options != 0; options &= options - 1) {
+                    int reached = next[state * (size + 1) + Integer.numberOfTrailingZeros(options)];
+                    if (reached >= 0) {
+                        to[reached] = true;
+                        any = true;
+                    }
+                }
+            }
+            if (!any) {
+                return false;
+            }
+        }
+        for (int state = 0; state < states; state++) {
+            if (forward[cells][state] && accept[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the candidates that are not part of any filling of the Cage that reaches the target.
+     * Afterwards canFinish answers for the same Cage and candidates.
+     *
+     * @param cage  Index of the Cage
+     * @param masks Candidates of the Cells of the Cage, in the order of Puzzle.getCageCells, narrowed in place
+     * @return false - no filling reaches the target (the masks are then all 0), true - otherwise
+     */
+    public boolean restrict(int cage, int[] masks) {
+        if (!isFeasible(cage, masks)) {
+            Arrays.fill(masks, 0, puzzle.getCageCells(cage).length, 0);
+            return false;
+        }
+        int[] next = transitions[cage];
+        boolean[] accept = accepting[cage];
+        int states = accept.length;
+        int cells = puzzle.getCageCells(cage).length;
+
+        System.arraycopy(accept, 0, backward[cells], 0, states);
+        for (int i = cells - 1; i >= 0; i--) {
+            boolean[] from = forward[i];
+            boolean[] after = backward[i + 1];
+            boolean[] before = backward[i];
+            int supported = 0;
+            for (int state = 0; state < states; state++) {
+                //Only states reachable from the start are ever asked about
+                before[state] = false;
+                if (!from[state]) {
+                    continue;
+                }
+                for (int options = masks[i]; options != 0; options &= options - 1) {
+                    int value = Integer.numberOfTrailingZeros(options);
+                    int reached = next[state * (size + 1) + value];
+                    if (reached >= 0 && after[reached]) {
+                        before[state] = true;
+                        supported |= 1 << value;
+                    }
+                }
+            }
+            masks[i] = supported;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the state of a Cage before any value is added.
+     *
+     * @param cage Index of the Cage
+     * @return The start state
+     */
+    public int start(int cage) {
+        prepare(cage);
+        return starts[cage];
+    }
+
+    /**
+     * Returns the state of a Cage after one more value.
+     *
+     * @param cage  Index of the Cage
+     * @param state The state so far
+     * @param value The value of the next Cell
+     * @return The new state, or -1 if the target is out of reach
+     */
+    public int next(int cage, int state, int value) {
+        return transitions[cage][state * (size + 1) + value];
+    }
+
+    /**
+     * Checks whether the rest of a Cage can still reach the target from a state, with the candidates
+     * given to the last call of restrict (which must have been for the same Cage).
+     *
+     * @param index The number of Cells of the Cage filled so far
+     * @param state The state after them, reached with values among the candidates (not -1)
+     * @return true - the remaining Cells can reach the target, false - otherwise
+     */
+    public boolean canFinish(int index, int state) {
+        return backward[index][state];
+    }
+}
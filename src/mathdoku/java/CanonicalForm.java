@@ -0,0 +1,241 @@
+package mathdoku.java;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CanonicalForm is the same for all Puzzles that are only rotations, reflections or transposes of each other,
+ * or that turn into each other when every value v is replaced by N+1-v.
+ * <p>
+ * Every one of the 8 symmetries of the square is applied to the Cage layout, the Cages are numbered
+ * in the order their first Cell appears (row by row), and the smallest resulting code is kept:
+ * the Cage number of every Cell, followed by the operator and the target number of every Cage.
+ * Relabelling the values (v -> N+1-v) is only tried when it keeps every target valid:
+ * + targets become k(N+1)-target, single Cell targets become N+1-target and - stays the same for two Cells,
+ * so puzzles with x, ÷ or longer - Cages are never relabelled.
+ * <p>
+ * The fingerprint is a 64 bit FNV-1a hash of the code.
+ */
+public class CanonicalForm {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    //Inverse Cell index permutations of the 8 symmetries (the Cell that ends up at every place), per Board size
+    private static final ConcurrentHashMap<Integer, int[][]> SYMMETRIES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int[] code;
+    private final long fingerprint;
+
+    private CanonicalForm(int size, int[] code) {
+        this.size = size;
+        this.code = code;
+        long hash = FNV_OFFSET ^ size;
+        for (int value : code) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                hash ^= (value >>> shift) & 0xFF;
+                hash *= FNV_PRIME;
+            }
+        }
+        this.fingerprint = hash;
+    }
+
+    /**
+     * Finds the canonical form of a Puzzle.
+     *
+     * @param puzzle The Puzzle
+     * @return Its canonical form
+     */
+    public static CanonicalForm of(Puzzle puzzle) {
+        int size = puzzle.getSize();
+        int cells = size * size;
+        int cages = puzzle.getCageCount();
+        int[] best = null;
+        int[] candidate = new int[cells + 2 * cages];
+        int[] labelOfCage = new int[cages];
+
+        boolean relabel = canRelabel(puzzle);
+        for (int[] inverse : symmetries(size)) {
+            for (int complement = 0; complement <= (relabel ? 1 : 0); complement++) {
+                encode(puzzle, inverse, complement == 1, candidate, labelOfCage);
+                if (best == null || compare(candidate, best) < 0) {
+                    best = candidate.clone();
+                }
+            }
+        }
+        return new CanonicalForm(size, best);
+    }
+
+    /**
+     * Writes the code of one symmetry of the Puzzle.
+     *
+     * @param puzzle      The Puzzle
+     * @param inverse     The Cell of the Puzzle that ends up at every place
+     * @param complement  true - the values are relabelled as N+1-v
+     * @param code        Receives the code
+     * @param labelOfCage Scratch space, one number per Cage
+     */
+    private static void encode(Puzzle puzzle, int[] inverse, boolean complement, int[] code, int[] labelOfCage) {
+        int size = puzzle.getSize();
+        int cells = size * size;
+        Arrays.fill(labelOfCage, 0);
+
+        int nextLabel = 1;
+        for (int place = 0; place < cells; place++) {
+            int cage = puzzle.getCageOf(inverse[place]);
+            if (cage < 0) {
+                code[place] = 0;
+                continue;
+            }
+            if (labelOfCage[cage] == 0) {
+                labelOfCage[cage] = nextLabel;
+                int offset = cells + 2 * (nextLabel - 1);
+                code[offset] = puzzle.getOperator(cage).ordinal();
+                code[offset + 1] = complement ? complementTarget(puzzle, cage) : puzzle.getTargetValue(cage);
+                nextLabel++;
+            }
+            code[place] = labelOfCage[cage];
+        }
+    }
+
+    /**
+     * Checks whether replacing every value v with N+1-v keeps all targets of the Puzzle valid.
+     *
+     * @param puzzle The Puzzle
+     * @return true - the values can be relabelled, false - otherwise
+     */
+    private static boolean canRelabel(Puzzle puzzle) {
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            switch (puzzle.getOperator(cage)) {
+                case MULTIPLY:
+                case DIVIDE:
+                    return false;
+                case SUBTRACT:
+                    if (puzzle.getCageCells(cage).length != 2) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static int complementTarget(Puzzle puzzle, int cage) {
+        int n = puzzle.getSize() + 1;
+        switch (puzzle.getOperator(cage)) {
+            case ADD:
+                return puzzle.getCageCells(cage).length * n - puzzle.getTargetValue(cage);
+            case NONE:
+                return n - puzzle.getTargetValue(cage);
+            default:
+                return puzzle.getTargetValue(cage);
+        }
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    private static int[] inverse(int[] permutation) {
+        int[] inverse = new int[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            inverse[permutation[i]] = i;
+        }
+        return inverse;
+    }
+
+    /**
+     * Returns the 8 symmetries of a square Board as Cell index permutations
+     * (identity, 3 rotations, 2 reflections and 2 transposes), computed once per size.
+     * The inverses are stored, so encode can look up the Cell at every place directly.
+     *
+     * @param size Size of the Board
+     * @return The permutations
+     */
+    private static int[][] symmetries(int size) {
+        return SYMMETRIES.computeIfAbsent(size, n -> {
+            int[][] symmetries = new int[8][size * size];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int cell = row * size + col;
+                    int last = size - 1;
+                    symmetries[0][cell] = row * size + col;
+                    symmetries[1][cell] = col * size + (last - row);
+                    symmetries[2][cell] = (last - row) * size + (last - col);
+                    symmetries[3][cell] = (last - col) * size + row;
+                    symmetries[4][cell] = row * size + (last - col);
+                    symmetries[5][cell] = (last - row) * size + col;
+                    symmetries[6][cell] = col * size + row;
+                    symmetries[7][cell] = (last - col) * size + (last - row);
+                }
+            }
+            for (int i = 0; i < symmetries.length; i++) {
+                symmetries[i] = inverse(symmetries[i]);
+            }
+            return symmetries;
+        });
+    }
+
+    /**
+     * Builds the Puzzle described by the canonical form.
+     *
+     * @return The canonical Puzzle
+     */
+    public Puzzle toPuzzle() {
+        int cells = size * size;
+        int cages = (code.length - cells) / 2;
+        String[] targets = new String[cages];
+        int[] counts = new int[cages];
+        for (int place = 0; place < cells; place++) {
+            if (code[place] > 0) {
+                counts[code[place] - 1]++;
+            }
+        }
+        int[][] cageCells = new int[cages][];
+        for (int cage = 0; cage < cages; cage++) {
+            cageCells[cage] = new int[counts[cage]];
+            targets[cage] = Operator.values()[code[cells + 2 * cage]].toTarget(code[cells + 2 * cage + 1]);
+            counts[cage] = 0;
+        }
+        for (int place = 0; place < cells; place++) {
+            if (code[place] > 0) {
+                int cage = code[place] - 1;
+                cageCells[cage][counts[cage]++] = place;
+            }
+        }
+        return new Puzzle(size, targets, cageCells);
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CanonicalForm)) {
+            return false;
+        }
+        CanonicalForm other = (CanonicalForm) o;
+        return size == other.size && Arrays.equals(code, other.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CanonicalForm{size=%d, fingerprint=%016x}", size, fingerprint);
+    }
+}
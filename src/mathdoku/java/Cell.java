@@ -12,12 +12,15 @@ import java.util.Arrays;
  * <p>
  * Each Cell has coordinates in the format [x,y],
  * where x and y are both integers that indicate row and column on the board.
+ * <p>
+ * Each Cell has pencil-mark notes: the candidates the user has marked, stored as a bitmask
+ * (bit v set - the value v is noted).
  */
 public class Cell implements Comparable<Cell> {
     private int cellID;
     private int value;
     private int[] coordinates;
-    private boolean inCage = false;
+    private int notes;
 
     public Cell(int cellID, int value, int[] coordinates) {
         this.cellID = cellID;
@@ -36,6 +39,7 @@ public class Cell implements Comparable<Cell> {
         return "Cell{" +
                 "cellID=" + cellID +
                 ", value=" + value +
+                ", notes=" + Integer.toBinaryString(notes) +
                 ", coordinates=" + Arrays.toString(coordinates) +
                 '}';
     }
@@ -52,15 +56,43 @@ public class Cell implements Comparable<Cell> {
         this.value = value;
     }
 
-    public int[] getCoordinates() {
-        return coordinates;
+    public int getNotes() {
+        return notes;
     }
 
-    public boolean isInCage() {
-        return inCage;
+    public void setNotes(int notes) {
+        this.notes = notes;
     }
 
-    public void setInCage(boolean inCage) {
-        this.inCage = inCage;
+    /**
+     * Checks whether the given value is noted in the Cell.
+     *
+     * @param value The value to be checked
+     * @return true - noted, false - otherwise
+     */
+    public boolean hasNote(int value) {
+        return (notes & (1 << value)) != 0;
+    }
+
+    /**
+     * Adds the given value to the notes of the Cell, or removes it if it's already there.
+     *
+     * @param value The value to be toggled
+     */
+    public void toggleNote(int value) {
+        notes ^= 1 << value;
+    }
+
+    /**
+     * Removes the given value from the notes of the Cell.
+     *
+     * @param value The value to be removed
+     */
+    public void removeNote(int value) {
+        notes &= ~(1 << value);
+    }
+
+    public int[] getCoordinates() {
+        return coordinates;
     }
 }
@@ -0,0 +1,227 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * CorpusRunner checks, solves and checks the uniqueness of every puzzle file in a directory tree,
+ * without the GUI, and writes a report with a row per puzzle.
+ * <p>
+ * Files are checked with the same rules as the Menu uses (PuzzleChecker) and solved on a work-stealing pool
+ * using all cores. The directory is walked lazily and only a few files per core are in flight at a time,
+ * and every row is written as soon as its puzzle is done (in the order they finish),
+ * so memory use doesn't grow with the size of the corpus.
+ * <p>
+ * Usage: CorpusRunner [--json] [--out reportFile] directory
+ * The report is CSV by default, or JSON (an array with an object per puzzle), written to stdout by default.
+ */
+public class CorpusRunner {
+    private static final int IN_FLIGHT_PER_CORE = 4;
+
+    private final SolverEngine engine;
+    private final boolean json;
+    private final Writer out;
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong valid = new AtomicLong();
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong unique = new AtomicLong();
+    private boolean firstRow = true;
+
+    /**
+     * Creates a CorpusRunner.
+     *
+     * @param engine The engine to be used, or null to use the fastest one for every size
+     * @param json   true - JSON report, false - CSV report
+     * @param out    Where the report is written to
+     */
+    public CorpusRunner(SolverEngine engine, boolean json, Writer out) {
+        this.engine = engine;
+        this.json = json;
+        this.out = out;
+    }
+
+    /**
+     * Processes every .txt file under the given directory and writes the report.
+     *
+     * @param directory The root of the corpus
+     * @throws IOException Exception is thrown if the directory can't be walked or the report can't be written
+     */
+    public void run(Path directory) throws IOException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Semaphore inFlight = new Semaphore(parallelism * IN_FLIGHT_PER_CORE);
+
+        out.write(json ? "[" : "file,valid,error,size,cages,solved,unique,parseMs,solveMs,uniqueMs" + System.lineSeparator());
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".txt"))
+                    .forEach(path -> {
+                        inFlight.acquireUninterruptibly();
+                        pool.execute(() -> {
+                            try {
+                                write(process(path));
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    });
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.write(json ? System.lineSeparator() + "]" + System.lineSeparator() : "");
+        out.flush();
+    }
+
+    /**
+     * Checks, solves and checks the uniqueness of one puzzle file.
+     *
+     * @param path The puzzle file
+     * @return The report row
+     */
+    private String process(Path path) {
+        files.incrementAndGet();
+        String file = path.toString();
+        long start = System.nanoTime();
+        Puzzle puzzle;
+        try {
+            PuzzleChecker.checkFile(file);
+            puzzle = Puzzle.readFile(file);
+        } catch (PuzzleChecker.FormatException | IOException | RuntimeException e) {
+            return row(file, e.getMessage(), null, false, false, System.nanoTime() - start, 0, 0);
+        }
+        long parseNanos = System.nanoTime() - start;
+        valid.incrementAndGet();
+
+        SolverEngine solverEngine = engine != null ? engine : SolverEngine.fastestFor(puzzle.getSize());
+        start = System.nanoTime();
+        boolean isSolved = solverEngine.create(puzzle).solve(new int[puzzle.getSize() * puzzle.getSize()]);
+        long solveNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        boolean isUnique = isSolved && solverEngine.create(puzzle).countSolutions(new int[puzzle.getSize() * puzzle.getSize()], 2) == 1;
+        long uniqueNanos = System.nanoTime() - start;
+
+        if (isSolved) {
+            solved.incrementAndGet();
+        }
+        if (isUnique) {
+            unique.incrementAndGet();
+        }
+        return row(file, null, puzzle, isSolved, isUnique, parseNanos, solveNanos, uniqueNanos);
+    }
+
+    /**
+     * Formats a report row.
+     *
+     * @return The CSV row or the JSON object
+     */
+    private String row(String file, String error, Puzzle puzzle, boolean isSolved, boolean isUnique,
+                       long parseNanos, long solveNanos, long uniqueNanos) {
+        int size = puzzle == null ? 0 : puzzle.getSize();
+        int cages = puzzle == null ? 0 : puzzle.getCageCount();
+        if (json) {
+            return String.format(Locale.ROOT,
+                    "{\"file\":\"%s\",\"valid\":%b,\"error\":%s,\"size\":%d,\"cages\":%d,\"solved\":%b,\"unique\":%b,"
+                            + "\"parseMs\":%.3f,\"solveMs\":%.3f,\"uniqueMs\":%.3f}",
+                    escape(file), error == null, error == null ? "null" : "\"" + escape(error) + "\"", size, cages,
+                    isSolved, isUnique, parseNanos / 1e6, solveNanos / 1e6, uniqueNanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%s,%b,%s,%d,%d,%b,%b,%.3f,%.3f,%.3f",
+                csv(file), error == null, error == null ? "" : csv(error), size, cages,
+                isSolved, isUnique, parseNanos / 1e6, solveNanos / 1e6, uniqueNanos / 1e6);
+    }
+
+    /**
+     * Writes a row to the report, one thread at a time.
+     *
+     * @param row The report row
+     */
+    private synchronized void write(String row) {
+        try {
+            if (json) {
+                out.write(firstRow ? System.lineSeparator() : "," + System.lineSeparator());
+            }
+            out.write(row);
+            if (!json) {
+                out.write(System.lineSeparator());
+            }
+            firstRow = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String csv(String text) {
+        return text.contains(",") || text.contains("\"") ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+    }
+
+    public long getFiles() {
+        return files.get();
+    }
+
+    public long getValid() {
+        return valid.get();
+    }
+
+    public long getSolved() {
+        return solved.get();
+    }
+
+    public long getUnique() {
+        return unique.get();
+    }
+
+    /**
+     * Runs the CorpusRunner on a directory (default: the bundled puzzles) and prints a summary to stderr.
+     *
+     * @param args [--json] [--out reportFile] directory
+     * @throws IOException Exception is thrown if the directory can't be walked or the report can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean json = false;
+        String outFile = null;
+        String directory = "src/mathdoku/resources/puzzles";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--json")) {
+                json = true;
+            } else if (args[i].equals("--out")) {
+                outFile = args[++i];
+            } else {
+                directory = args[i];
+            }
+        }
+
+        Writer out = outFile == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Paths.get(outFile), StandardCharsets.UTF_8);
+        CorpusRunner runner = new CorpusRunner(null, json, out);
+        long start = System.nanoTime();
+        try {
+            runner.run(Paths.get(directory));
+        } finally {
+            if (outFile != null) {
+                out.close();
+            }
+        }
+        System.err.printf(Locale.ROOT, "%d files, %d valid, %d solved, %d unique in %.1f s%n",
+                runner.getFiles(), runner.getValid(), runner.getSolved(), runner.getUnique(),
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,362 @@
+package mathdoku.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * DlxSolver solves a Puzzle as an exact cover problem with Knuth's Algorithm X and Dancing Links.
+ * <p>
+ * Every valid filling of every Cage (the target is reached, Cells that share a row/column get different values,
+ * and the values already on the Board are kept) is a row of the matrix. The columns are:
+ * - one per Cage: every Cage gets exactly one filling
+ * - one per (row, value): every value appears exactly once in every row
+ * - one per (column, value): every value appears exactly once in every column
+ * Cells that are in no Cage get a one Cell "Cage" with any value allowed.
+ * <p>
+ * The matrix is kept as a toroidal doubly linked list in int arrays, and the column with
+ * the fewest rows is always covered first.
+ */
+public class DlxSolver implements SolverBackend {
+    private final Puzzle puzzle;
+    private final int size;
+    private final int[][] cages;
+    private final CageOracle oracle;
+    private final int[] cageMasks;
+    private SolverMetrics metrics;
+
+    //The linked matrix: node 0 is the root, nodes 1 to columnCount are the column headers
+    private int[] left;
+    private int[] right;
+    private int[] up;
+    private int[] down;
+    private int[] column;
+    private int[] rowOf;
+    private int[] columnSize;
+    private int nodeCount;
+
+    //Matrix rows: the Cage and the values of its filling
+    private ArrayList<int[]> rowValues;
+    private ArrayList<Integer> rowCage;
+    private int[] chosenRows;
+    private int[] solution;
+    private int solutionsFound;
+
+    public DlxSolver(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+        this.metrics = new SolverMetrics(puzzle);
+
+        //Cells without a Cage get a Cage of their own
+        ArrayList<int[]> allCages = new ArrayList<>();
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            allCages.add(puzzle.getCageCells(i));
+        }
+        for (int cell = 0; cell < size * size; cell++) {
+            if (puzzle.getCageOf(cell) < 0) {
+                allCages.add(new int[]{cell});
+            }
+        }
+        this.cages = allCages.toArray(new int[0][]);
+        this.oracle = new CageOracle(puzzle);
+
+        int largestCage = 1;
+        for (int[] cells : cages) {
+            largestCage = Math.max(largestCage, cells.length);
+        }
+        this.cageMasks = new int[largestCage];
+    }
+
+    @Override
+    public SolveResult solve(int[] grid, SolveBudget budget) {
+        SolveResult result = run(grid, 1, budget);
+        if (result.isSolved()) {
+            System.arraycopy(solution, 0, grid, 0, grid.length);
+        }
+        return result;
+    }
+
+    @Override
+    public SolveResult countSolutions(int[] grid, int limit, SolveBudget budget) {
+        return run(grid, limit, budget);
+    }
+
+    /**
+     * Builds the matrix for the given values and searches it.
+     * The first solution found is kept in the solution field.
+     *
+     * @param grid   Values of all Cells (left as they are)
+     * @param limit  The search stops once this many solutions are found
+     * @param budget The SolveBudget of the run, for both building and searching
+     * @return The result of the run
+     */
+    private SolveResult run(int[] grid, int limit, SolveBudget budget) {
+        metrics = new SolverMetrics(puzzle);
+        SolverEvent event = new SolverEvent();
+        event.begin();
+        long start = System.nanoTime();
+        metrics.limit(budget, start);
+
+        SolveResult result;
+        solution = null;
+        try {
+            build(grid);
+            chosenRows = new int[cages.length];
+            solutionsFound = search(0, limit);
+            metrics.finish(solutionsFound > 0, System.nanoTime() - start);
+            result = SolveResult.finished(solutionsFound, metrics);
+        } catch (SolveBudget.ExceededException e) {
+            metrics.finishExceeded(System.nanoTime() - start);
+            result = SolveResult.exceeded(metrics);
+        }
+        event.finish(SolverEngine.DLX.name(), puzzle, metrics);
+        return result;
+    }
+
+    /**
+     * Creates the column headers and adds a row for every valid filling of every Cage.
+     *
+     * @param grid Values of all Cells (0 - empty)
+     */
+    private void build(int[] grid) {
+        int columnCount = cages.length + 2 * size * size;
+        int capacity = columnCount + 1 + 64;
+        left = new int[capacity];
+        right = new int[capacity];
+        up = new int[capacity];
+        down = new int[capacity];
+        column = new int[capacity];
+        rowOf = new int[capacity];
+        columnSize = new int[columnCount + 1];
+        rowValues = new ArrayList<>();
+        rowCage = new ArrayList<>();
+
+        for (int c = 0; c <= columnCount; c++) {
+            left[c] = c == 0 ? columnCount : c - 1;
+            right[c] = c == columnCount ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+        nodeCount = columnCount + 1;
+
+        int all = ((1 << size) - 1) << 1;
+        for (int cage = 0; cage < cages.length; cage++) {
+            int[] cells = cages[cage];
+            for (int i = 0; i < cells.length; i++) {
+                cageMasks[i] = grid[cells[i]] != 0 ? 1 << grid[cells[i]] : all;
+            }
+            if (cage >= puzzle.getCageCount() || !CageOracle.isWorthAsking(cageMasks, cells.length)) {
+                enumerateFillings(grid, cage, new int[cells.length], 0, -1);
+            } else if (oracle.restrict(cage, cageMasks)) {
+                enumerateFillings(grid, cage, new int[cells.length], 0, oracle.start(cage));
+            }
+        }
+    }
+
+    /**
+     * Tries every value for every Cell of the Cage and adds the fillings that are valid as rows.
+     * In a Cage with many possible fillings a value is only tried if the CageOracle says the rest of the Cage
+     * can still reach the target after it, so no branch is entered that can't end in a filling (apart from
+     * values repeated in a row/column). Other Cages are cut off by Operator.canReach.
+     *
+     * @param grid   Values of all Cells (0 - empty)
+     * @param cage   Index of the Cage
+     * @param values The filling built so far
+     * @param index  Index (in the Cage) of the Cell to be filled next
+     * @param state  The state of the CageOracle after the filling so far, -1 if it's not asked
+     */
+    private void enumerateFillings(int[] grid, int cage, int[] values, int index, int state) {
+        int[] cells = cages[cage];
+        metrics.step();
+        if (index == cells.length) {
+            boolean matches = cage >= puzzle.getCageCount()
+                    || puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), values, values.length);
+            if (cage < puzzle.getCageCount()) {
+                metrics.cageCheck(cage, !matches);
+            }
+            if (matches) {
+                addRow(cage, values.clone());
+            }
+            return;
+        }
+
+        int cell = cells[index];
+        for (int value = 1; value <= size; value++) {
+            if (grid[cell] != 0 && grid[cell] != value) {
+                continue;
+            }
+            boolean clash = false;
+            for (int j = 0; j < index && !clash; j++) {
+                clash = values[j] == value && (cells[j] / size == cell / size || cells[j] % size == cell % size);
+            }
+            values[index] = value;
+            if (clash) {
+                continue;
+            }
+            if (state < 0) {
+                if (cage >= puzzle.getCageCount() || puzzle.getOperator(cage)
+                        .canReach(puzzle.getTargetValue(cage), values, index + 1, cells.length, size)) {
+                    enumerateFillings(grid, cage, values, index + 1, -1);
+                }
+                continue;
+            }
+            int next = oracle.next(cage, state, value);
+            if (next >= 0 && oracle.canFinish(index + 1, next)) {
+                enumerateFillings(grid, cage, values, index + 1, next);
+            }
+        }
+    }
+
+    /**
+     * Adds a filling of a Cage as a row of the matrix.
+     *
+     * @param cage   Index of the Cage
+     * @param values Values of the Cells of the Cage
+     */
+    private void addRow(int cage, int[] values) {
+        int row = rowValues.size();
+        rowValues.add(values);
+        rowCage.add(cage);
+
+        int[] cells = cages[cage];
+        int first = appendNode(1 + cage, row, -1);
+        for (int i = 0; i < cells.length; i++) {
+            int value = values[i] - 1;
+            appendNode(1 + cages.length + (cells[i] / size) * size + value, row, first);
+            appendNode(1 + cages.length + size * size + (cells[i] % size) * size + value, row, first);
+        }
+    }
+
+    /**
+     * Appends a node at the bottom of a column and at the end of a row.
+     *
+     * @param col   The column of the node
+     * @param row   The matrix row of the node
+     * @param first The first node of the row, or -1 if this node starts the row
+     * @return The new node
+     */
+    private int appendNode(int col, int row, int first) {
+        if (nodeCount == left.length) {
+            int capacity = left.length * 2;
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            up = Arrays.copyOf(up, capacity);
+            down = Arrays.copyOf(down, capacity);
+            column = Arrays.copyOf(column, capacity);
+            rowOf = Arrays.copyOf(rowOf, capacity);
+        }
+        int node = nodeCount++;
+        column[node] = col;
+        rowOf[node] = row;
+        up[node] = up[col];
+        down[node] = col;
+        down[up[col]] = node;
+        up[col] = node;
+        columnSize[col]++;
+
+        if (first < 0) {
+            left[node] = node;
+            right[node] = node;
+        } else {
+            left[node] = left[first];
+            right[node] = first;
+            right[left[first]] = node;
+            left[first] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Algorithm X: covers the column with the fewest rows and tries each of its rows in turn.
+     *
+     * @param depth The number of rows chosen so far
+     * @param limit The number of solutions still wanted
+     * @return The number of solutions found (at most limit)
+     */
+    private int search(int depth, int limit) {
+        if (right[0] == 0) {
+            if (solution == null) {
+                solution = new int[size * size];
+                for (int i = 0; i < depth; i++) {
+                    int[] cells = cages[rowCage.get(chosenRows[i])];
+                    int[] values = rowValues.get(chosenRows[i]);
+                    for (int j = 0; j < cells.length; j++) {
+                        solution[cells[j]] = values[j];
+                    }
+                }
+            }
+            metrics.solution();
+            return 1;
+        }
+
+        int chosen = right[0];
+        for (int c = right[chosen]; c != 0; c = right[c]) {
+            if (columnSize[c] < columnSize[chosen]) {
+                chosen = c;
+            }
+        }
+        if (columnSize[chosen] == 0) {
+            return 0;
+        }
+
+        int found = 0;
+        cover(chosen);
+        for (int node = down[chosen]; node != chosen && found < limit; node = down[node]) {
+            metrics.node(depth + 1);
+            chosenRows[depth] = rowOf[node];
+            for (int j = right[node]; j != node; j = right[j]) {
+                cover(column[j]);
+            }
+            int foundHere = search(depth + 1, limit - found);
+            found += foundHere;
+            for (int j = left[node]; j != node; j = left[j]) {
+                uncover(column[j]);
+            }
+            if (foundHere == 0) {
+                metrics.backtrack();
+            }
+        }
+        uncover(chosen);
+        return found;
+    }
+
+    /**
+     * Removes a column and all rows that have a node in it from the matrix.
+     *
+     * @param col The column to be covered
+     */
+    private void cover(int col) {
+        metrics.propagation();
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int i = down[col]; i != col; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                columnSize[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Puts a covered column and its rows back, in the reverse order of cover.
+     *
+     * @param col The column to be uncovered
+     */
+    private void uncover(int col) {
+        for (int i = up[col]; i != col; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSize[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+    }
+
+    @Override
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -36,7 +36,9 @@ public class Game extends Application {
     private Board board;
     private Button undo = new Button("Undo");
     private Button redo = new Button("Redo");
+    private Button notes = new Button("Notes");
     private boolean mistakesMode = false;
+    private GameJournal.State saved;
 
     /**
      * Creates a new Game.
@@ -84,12 +86,29 @@ public class Game extends Application {
         start(stage);
     }
 
+    /**
+     * Resumes a Game saved by the GameJournal.
+     *
+     * @param stage Stage where the Game is
+     * @param saved The saved state of the Game
+     * @throws Exception Exception is thrown in case something is wrong with the stage
+     */
+    public Game(Stage stage, GameJournal.State saved) throws Exception {
+        this.boardSize = saved.getPuzzle().getSize();
+        this.difficulty = saved.getDifficulty();
+        this.saved = saved;
+        start(stage);
+    }
+
     @Override
     public void start(Stage stage) throws Exception {
         /* ------- Visual Elements Setup ------- */
 
         //Board (Canvas) setup
-        if (puzzle != null) {
+        if (saved != null) {
+            this.board = new Board(this, saved.getPuzzle());
+            board.restore(saved);
+        } else if (puzzle != null) {
             this.board = new Board(boardSize, this, puzzle);
         } else if (cages != null) {
             this.board = new Board(this, boardSize, allowed,cells,cages);
@@ -97,6 +116,9 @@ public class Game extends Application {
             this.board = new Board(boardSize, this);
         }
 
+        //Every action from now on is saved, so the Game can be resumed from the Menu
+        board.startAutosave(difficulty);
+
 
         //Panes setup (wrapping Board inside Pane)
         BorderPane borderPane = new BorderPane();
@@ -116,8 +138,10 @@ public class Game extends Application {
         MenuItem quit = new MenuItem("Quit");
         MenuItem howTo = new MenuItem("What is MathDoku?");
         MenuItem showSolution = new MenuItem("Show solution");
+        MenuItem solverStatistics = new MenuItem("Solver statistics");
+        CheckMenuItem mistakesAgainstSolution = new CheckMenuItem("Show mistakes against solution");
         file.getItems().addAll(newBoard, backToMenu, preferences, quit);
-        help.getItems().addAll(showSolution, howTo);
+        help.getItems().addAll(showSolution, mistakesAgainstSolution, solverStatistics, howTo);
         MenuBar menuBar = new MenuBar();
         menuBar.getMenus().addAll(file, help);
 
@@ -138,7 +162,7 @@ public class Game extends Application {
         Button buttonNumX = new Button("X");
 
         //Setting up button sizes and alignment
-        Button[] buttons = new Button[]{undo, redo, hint, showMistakes, clear,
+        Button[] buttons = new Button[]{undo, redo, notes, hint, showMistakes, clear,
                 buttonNum1, buttonNum2, buttonNum3, buttonNum4,
                 buttonNum5, buttonNum6, buttonNum7, buttonNum8, buttonNumX};
         for (Button button : buttons) {
@@ -157,7 +181,7 @@ public class Game extends Application {
         hBox.setAlignment(Pos.CENTER);
         hBox.setSpacing(10);
         hBox.setPadding(new Insets(10, 10, 10, 10));
-        hBox.getChildren().addAll(undo, redo, hint, showMistakes, clear);
+        hBox.getChildren().addAll(undo, redo, notes, hint, showMistakes, clear);
 
         //VBox NumPad creating & aligning
         Button[] numPad = new Button[]{buttonNum1, buttonNum2, buttonNum3, buttonNum4,
@@ -169,10 +193,16 @@ public class Game extends Application {
         vBox.getChildren().addAll(buttonNum1, buttonNum2, buttonNum3,
                 buttonNum4, buttonNum5, buttonNum6, buttonNum7, buttonNum8, buttonNumX);
 
+        //Explanation of the last hint, under the toolbar
+        Label hintExplanation = new Label();
+        hintExplanation.setWrapText(true);
+        hintExplanation.setPadding(new Insets(0, 10, 10, 10));
+        VBox bottom = new VBox(hBox, hintExplanation);
+
         //Placing elements on the borderPane
         borderPane.setCenter(pane);
         borderPane.setTop(menuBar);
-        borderPane.setBottom(hBox);
+        borderPane.setBottom(bottom);
         borderPane.setRight(vBox);
 
         /* ------- Functionality Setup (Event Handlers) ------- */
@@ -191,6 +221,7 @@ public class Game extends Application {
 
         //When back to menu is pressed opens Menu in the same stage
         backToMenu.setOnAction(actionEvent -> {
+            board.stopAutosave();
             Menu menu = new Menu();
             try {
                 menu.start(stage);
@@ -201,6 +232,7 @@ public class Game extends Application {
 
         //When Quit is pressed quits the game
         quit.setOnAction(actionEvent -> {
+            board.stopAutosave();
             Platform.exit();
             System.exit(0);
         });
@@ -217,7 +249,8 @@ public class Game extends Application {
                         "WARNING: Generating new game will erase all previous inputs!");
                 Optional<ButtonType> result = newGameAlert.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
-                    new Generator(stage, boardSize, difficulty);
+                    board.stopAutosave();
+                    Generator.startGame(stage, boardSize, difficulty);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -225,7 +258,22 @@ public class Game extends Application {
         });
 
         //Solves the puzzle if the Show Solution is pressed
-        showSolution.setOnAction(actionEvent -> board.showSolution());
+        showSolution.setOnAction(actionEvent -> showSolverProblem(board.showSolution()));
+
+        //Show Mistakes highlights the Cells that differ from the solution instead of the broken rules
+        //(the solution is found in the background, the mode and the toggle follow once it's there)
+        mistakesAgainstSolution.setOnAction(actionEvent -> {
+            boolean selected = mistakesAgainstSolution.isSelected();
+            board.setMistakesAgainstSolution(selected).thenAccept(result -> {
+                if (result != null) {
+                    showSolverProblem(result);
+                }
+                mistakesAgainstSolution.setSelected(board.isMistakesAgainstSolution());
+            });
+        });
+
+        //Shows what the solver did during the last Hint or Show Solution
+        solverStatistics.setOnAction(actionEvent -> showSolverStatistics());
 
         //When Clear is pressed pops up a window asking to confirm the action
         clear.setOnAction(actionEvent -> {
@@ -248,6 +296,12 @@ public class Game extends Application {
             mistakesMode = !mistakesMode;
         });
 
+        //When Notes toggle is pressed, the entered numbers are noted in the Cells instead (also toggled with N)
+        notes.setOnAction(e -> {
+            board.toggleNotesMode();
+            highlightNotes(board.isNotesMode());
+        });
+
         //When undo is pressed, cancels the last action
         undo.setOnAction(e -> board.undo());
 
@@ -274,8 +328,10 @@ public class Game extends Application {
         board.setOnKeyPressed(board::validateKeyboardInput);
 
         hint.setOnAction(actionEvent -> {
-            board.showHint();
+            SolveResult result = board.showHint();
+            hintExplanation.setText(board.getHintExplanation());
             board.update();
+            showSolverProblem(result);
         });
 
         //When preferences button is pressed, opens the setting window
@@ -289,16 +345,28 @@ public class Game extends Application {
             ObservableList<String> fontSizeOptions =
                     FXCollections.observableArrayList("Small", "Medium", "Large");
             ComboBox<String> fontSizeBox = new ComboBox<>(fontSizeOptions);
+            Label solverLabel = new Label("Solver: ");
+            ObservableList<String> solverOptions = FXCollections.observableArrayList("Automatic");
+            for (SolverEngine engine : SolverEngine.values()) {
+                solverOptions.add(engine.toString());
+            }
+            ComboBox<String> solverBox = new ComboBox<>(solverOptions);
+            CheckBox autoRemoveNotesBox = new CheckBox("Remove notes when a number is entered");
+            autoRemoveNotesBox.setSelected(board.isAutoRemoveNotes());
             Button done = new Button("Done");
 
             //Creating Panes
             VBox preferencesVBox = new VBox();
             HBox preferencesHBox = new HBox();
+            HBox solverHBox = new HBox();
 
             //HBox alignment and padding
             preferencesHBox.setAlignment(Pos.CENTER);
             preferencesHBox.setSpacing(10);
             preferencesHBox.setPadding(new Insets(10, 10, 10, 10));
+            solverHBox.setAlignment(Pos.CENTER);
+            solverHBox.setSpacing(10);
+            solverHBox.setPadding(new Insets(10, 10, 10, 10));
 
             //VBox alignment and padding
             preferencesVBox.setAlignment(Pos.CENTER);
@@ -307,11 +375,18 @@ public class Game extends Application {
 
             //Adding elements to the panes
             preferencesHBox.getChildren().addAll(fontSizeLabel, fontSizeBox);
-            preferencesVBox.getChildren().addAll(preferencesHBox, done);
+            solverHBox.getChildren().addAll(solverLabel, solverBox);
+            preferencesVBox.getChildren().addAll(preferencesHBox, solverHBox, autoRemoveNotesBox, done);
 
-            //When done is pressed, sets the font for the board and closes the preferences window
+            //When done is pressed, sets the chosen options for the board and closes the preferences window
             done.setOnAction(actionEvent1 -> {
-                board.setFont(fontSizeBox.getValue());
+                if (fontSizeBox.getValue() != null) {
+                    board.setFont(fontSizeBox.getValue());
+                }
+                if (solverBox.getValue() != null) {
+                    board.setSolverEngine(SolverEngine.fromLabel(solverBox.getValue()));
+                }
+                board.setAutoRemoveNotes(autoRemoveNotesBox.isSelected());
                 preferencesStage.close();
             });
 
@@ -327,6 +402,7 @@ public class Game extends Application {
         stage.setMinWidth(400);
         stage.setResizable(true);
         stage.setTitle("MathDoku");
+        stage.setOnCloseRequest(windowEvent -> board.stopAutosave());
         stage.setScene(new Scene(borderPane, 400, 435));
         stage.show();
     }
@@ -336,6 +412,10 @@ public class Game extends Application {
      * depending on stacks being empty/non-empty
      */
     public void disableUndoRedo() {
+        //The Board can be drawn before start has assigned it
+        if (board == null) {
+            return;
+        }
         if (board.isPossibleToUndo()) {
             undo.setDisable(false);
         } else {
@@ -348,6 +428,58 @@ public class Game extends Application {
         }
     }
 
+    /**
+     * Outlines the Notes button while the notes mode is on.
+     *
+     * @param notesMode true - the notes mode is on, false - otherwise
+     */
+    public void highlightNotes(boolean notesMode) {
+        highlightButton(notes, notesMode);
+    }
+
+    /**
+     * Tells the user why a hint or the solution couldn't be shown, if the Solver didn't solve the puzzle.
+     *
+     * @param result The result of the Solver
+     */
+    private void showSolverProblem(SolveResult result) {
+        if (result.isSolved()) {
+            return;
+        }
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("MathDoku");
+        if (result.isBudgetExceeded()) {
+            alert.setHeaderText("The puzzle is taking too long to solve");
+            alert.setContentText(result.describe() + ". The puzzle might have far too many solutions.");
+        } else {
+            alert.setHeaderText("The puzzle can't be solved");
+            alert.setContentText(result.describe() + ".");
+        }
+        alert.showAndWait();
+    }
+
+    /**
+     * Opens a debug window with the metrics of the last solver run.
+     */
+    private void showSolverStatistics() {
+        SolverMetrics metrics = board.getSolverMetrics();
+
+        TextArea textArea = new TextArea();
+        textArea.setEditable(false);
+        textArea.setWrapText(true);
+        textArea.setStyle("-fx-font-family: monospace;");
+        if (metrics == null) {
+            textArea.setText("The solver hasn't been run yet, use Hint or Show solution first.");
+        } else {
+            textArea.setText(metrics + System.lineSeparator() + "JSON:" + System.lineSeparator() + metrics.toJson());
+        }
+
+        Stage statisticsStage = new Stage();
+        statisticsStage.setTitle("Solver statistics");
+        statisticsStage.setScene(new Scene(new BorderPane(textArea), 420, 400));
+        statisticsStage.show();
+    }
+
     /**
      * Creates an outline for the given button.
      * @param button The button to be outlined
@@ -0,0 +1,484 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * GameJournal autosaves the Game in progress as an append-only binary journal,
+ * so it can be resumed after the app is closed or crashes.
+ * <p>
+ * The file starts with a snapshot (the Puzzle, the values, the notes and the undo/redo history)
+ * followed by one 3 byte record (type, cell, value) for every action on the Board.
+ * Every SNAPSHOT_INTERVAL records the file is rewritten as a single snapshot, so resuming
+ * only replays a short tail. A record cut short by a crash is ignored.
+ * <p>
+ * All file access happens on one background thread, the Board only queues the records.
+ * Writes are buffered and synced to the disk at most once per SYNC_DELAY_MS.
+ */
+public class GameJournal {
+    public static final byte VALUE = 1;
+    public static final byte VALUE_REMOVING_NOTES = 2;
+    public static final byte CLEAR = 3;
+    public static final byte NOTE = 4;
+    public static final byte CLEAR_NOTES = 5;
+    public static final byte UNDO = 6;
+    public static final byte REDO = 7;
+    public static final byte HINT = 8;
+    public static final byte FILL = 9;
+    public static final byte CLEAR_BOARD = 10;
+
+    private static final int MAGIC = 0x4D444A31; //"MDJ1"
+    private static final int SNAPSHOT_INTERVAL = 256;
+    private static final long SYNC_DELAY_MS = 1000;
+    private static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".mathdoku", "autosave.journal");
+
+    //One writer thread for all journals, so a new Game never overtakes the writes of the previous one
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        //The writer thread is a daemon, so the queued records are written here before the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            WRITER.shutdown();
+            try {
+                WRITER.awaitTermination(SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "autosave-shutdown"));
+    }
+
+    private final Path file;
+    private final State state;
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream out;
+    private int recordsSinceSnapshot;
+    private ScheduledFuture<?> pendingSync;
+    private boolean failed = false;
+    private boolean closed = false;
+    private boolean discarded = false;
+
+    /**
+     * The state of a Game as it is stored in the journal.
+     * Records are applied the same way the Board applies the actions.
+     */
+    public static class State {
+        private final Puzzle puzzle;
+        private final int difficulty;
+        private final int[] values;
+        private final int[] notes;
+        private final ArrayList<int[]> history = new ArrayList<>();
+        private final ArrayList<int[]> undone = new ArrayList<>();
+
+        /**
+         * Creates the state of a new Game with an empty Board.
+         *
+         * @param puzzle     The Puzzle of the Game
+         * @param difficulty Difficulty level of the Game (0 - loaded from a file)
+         */
+        public State(Puzzle puzzle, int difficulty) {
+            this.puzzle = puzzle;
+            this.difficulty = difficulty;
+            this.values = new int[puzzle.getSize() * puzzle.getSize()];
+            this.notes = new int[values.length];
+        }
+
+        /**
+         * Applies a record to the state.
+         *
+         * @param type  Type of the record
+         * @param cell  Index of the Cell (CellID - 1)
+         * @param value The value of the record
+         */
+        void apply(int type, int cell, int value) {
+            switch (type) {
+                case VALUE:
+                case HINT:
+                    values[cell] = value;
+                    history.add(new int[]{cell, value});
+                    break;
+                case VALUE_REMOVING_NOTES:
+                    values[cell] = value;
+                    history.add(new int[]{cell, value});
+                    removeNotes(cell, value);
+                    break;
+                case CLEAR:
+                    values[cell] = 0;
+                    break;
+                case NOTE:
+                    notes[cell] ^= 1 << value;
+                    break;
+                case CLEAR_NOTES:
+                    notes[cell] = 0;
+                    break;
+                case UNDO:
+                    if (!history.isEmpty()) {
+                        int[] last = history.remove(history.size() - 1);
+                        undone.add(last);
+                        values[last[0]] = lastValue(last[0]);
+                    }
+                    break;
+                case REDO:
+                    if (!undone.isEmpty()) {
+                        int[] last = undone.remove(undone.size() - 1);
+                        history.add(last);
+                        values[last[0]] = lastValue(last[0]);
+                    }
+                    break;
+                case FILL:
+                    values[cell] = value;
+                    break;
+                case CLEAR_BOARD:
+                    Arrays.fill(values, 0);
+                    Arrays.fill(notes, 0);
+                    history.clear();
+                    undone.clear();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown journal record: " + type);
+            }
+        }
+
+        /**
+         * Finds the value last entered into the Cell according to the history (0 if there is none).
+         *
+         * @param cell Index of the Cell
+         * @return The last value
+         */
+        private int lastValue(int cell) {
+            for (int i = history.size() - 1; i >= 0; i--) {
+                if (history.get(i)[0] == cell) {
+                    return history.get(i)[1];
+                }
+            }
+            return 0;
+        }
+
+        private void removeNotes(int cell, int value) {
+            int size = puzzle.getSize();
+            int rowStart = cell - cell % size;
+            for (int i = 0; i < size; i++) {
+                notes[rowStart + i] &= ~(1 << value);
+                notes[cell % size + i * size] &= ~(1 << value);
+            }
+            int cage = puzzle.getCageOf(cell);
+            if (cage >= 0) {
+                for (int cageCell : puzzle.getCageCells(cage)) {
+                    notes[cageCell] &= ~(1 << value);
+                }
+            }
+        }
+
+        /**
+         * Checks whether the values solve the Puzzle.
+         *
+         * @return true - solved, false - otherwise
+         */
+        private boolean isSolved() {
+            GameState game = new GameState(puzzle);
+            for (int i = 0; i < values.length; i++) {
+                game.setValue(i, values[i]);
+            }
+            return game.isSolved();
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeUTF(puzzle.toText());
+            out.writeByte(difficulty);
+            for (int i = 0; i < values.length; i++) {
+                out.writeByte(values[i]);
+                out.writeShort(notes[i]);
+            }
+            writeMoves(out, history);
+            writeMoves(out, undone);
+        }
+
+        private static void writeMoves(DataOutputStream out, ArrayList<int[]> moves) throws IOException {
+            out.writeInt(moves.size());
+            for (int[] move : moves) {
+                out.writeByte(move[0]);
+                out.writeByte(move[1]);
+            }
+        }
+
+        private static State read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a MathDoku journal");
+            }
+            State state = new State(Puzzle.parse(in.readUTF()), in.readByte());
+            for (int i = 0; i < state.values.length; i++) {
+                state.values[i] = in.readByte();
+                state.notes[i] = in.readShort();
+            }
+            readMoves(in, state.history);
+            readMoves(in, state.undone);
+            return state;
+        }
+
+        private static void readMoves(DataInputStream in, ArrayList<int[]> moves) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                moves.add(new int[]{in.readByte(), in.readByte()});
+            }
+        }
+
+        public Puzzle getPuzzle() {
+            return puzzle;
+        }
+
+        public int getDifficulty() {
+            return difficulty;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public int[] getNotes() {
+            return notes;
+        }
+
+        /**
+         * Returns the moves that can be undone, the oldest first, as {cell, value} pairs.
+         *
+         * @return The undo history
+         */
+        public ArrayList<int[]> getHistory() {
+            return history;
+        }
+
+        /**
+         * Returns the moves that can be redone, the last undone move last, as {cell, value} pairs.
+         *
+         * @return The redo history
+         */
+        public ArrayList<int[]> getUndone() {
+            return undone;
+        }
+    }
+
+    private GameJournal(Path file, State state) {
+        this.file = file;
+        this.state = state;
+    }
+
+    /**
+     * Starts a journal in the default autosave file, replacing whatever was saved there.
+     *
+     * @param state The state of the Game to start from
+     * @return The new journal
+     */
+    public static GameJournal start(State state) {
+        return start(DEFAULT_FILE, state);
+    }
+
+    /**
+     * Starts a journal in the given file, replacing whatever was saved there.
+     *
+     * @param file  The journal file
+     * @param state The state of the Game to start from (it's then updated by the writer thread only)
+     * @return The new journal
+     */
+    public static GameJournal start(Path file, State state) {
+        GameJournal journal = new GameJournal(file, state);
+        WRITER.execute(journal::snapshot);
+        return journal;
+    }
+
+    /**
+     * Queues a record. Returns at once, the record is written on the background thread.
+     *
+     * @param type  Type of the record
+     * @param cell  Index of the Cell (CellID - 1), 0 if not needed
+     * @param value The value of the record, 0 if not needed
+     */
+    public void record(byte type, int cell, int value) {
+        WRITER.execute(() -> write(type, cell, value));
+    }
+
+    /**
+     * Queues writing the remaining records and syncing the file. Returns at once, records queued
+     * afterwards are ignored. Whatever is still queued when the app exits is written before it does.
+     */
+    public void close() {
+        WRITER.execute(() -> {
+            closeFile();
+            closed = true;
+        });
+    }
+
+    /**
+     * Deletes the file, when there is nothing left to resume (the puzzle is solved).
+     * The journal keeps following the Game, and the first record that leaves the puzzle unsolved
+     * (an undo, a cleared Cell or Board) writes the file again from a snapshot.
+     */
+    public void discard() {
+        WRITER.execute(() -> {
+            closeFile();
+            discarded = true;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Checks whether there is a saved Game in the default autosave file.
+     *
+     * @return true - there is a file to resume, false - otherwise
+     */
+    public static boolean hasSavedGame() {
+        return Files.isRegularFile(DEFAULT_FILE);
+    }
+
+    /**
+     * Loads the saved Game from the default autosave file.
+     *
+     * @return The saved state
+     * @throws IOException Exception is thrown if the file is missing or is not a journal
+     */
+    public static State load() throws IOException {
+        return load(DEFAULT_FILE);
+    }
+
+    /**
+     * Loads a journal: reads the snapshot and replays the records after it.
+     *
+     * @param file The journal file
+     * @return The saved state
+     * @throws IOException Exception is thrown if the file is missing or is not a journal
+     */
+    public static State load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            State state = State.read(in);
+            byte[] record = new byte[3];
+            while (true) {
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    //The end of the journal, or a record cut short by a crash
+                    break;
+                }
+                state.apply(record[0], record[1], record[2]);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Applies a record, appends it to the file, and rewrites the file as a snapshot once the tail is long
+     * (or when a discarded file is needed again). Runs on the writer thread.
+     */
+    private void write(byte type, int cell, int value) {
+        if (failed || closed) {
+            return;
+        }
+        state.apply(type, cell, value);
+        if (discarded) {
+            //The winning move itself is recorded after the discard, a solved Board is never written back
+            if (!state.isSolved()) {
+                snapshot();
+            }
+            return;
+        }
+        if (out == null) {
+            return;
+        }
+        if (++recordsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            snapshot();
+            return;
+        }
+        try {
+            out.writeByte(type);
+            out.writeByte(cell);
+            out.writeByte(value);
+            if (pendingSync == null) {
+                pendingSync = WRITER.schedule(this::sync, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes the current state into a temporary file, moves it over the journal and keeps appending to it.
+     * Runs on the writer thread.
+     */
+    private void snapshot() {
+        if (failed) {
+            return;
+        }
+        closeFile();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileOutputStream snapshotStream = new FileOutputStream(temporary.toFile());
+                 DataOutputStream snapshotOut = new DataOutputStream(new BufferedOutputStream(snapshotStream))) {
+                state.write(snapshotOut);
+                snapshotOut.flush();
+                snapshotStream.getFD().sync();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            fileOutputStream = new FileOutputStream(file.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            recordsSinceSnapshot = 0;
+            discarded = false;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Flushes the buffered records and syncs them to the disk. Runs on the writer thread.
+     */
+    private void sync() {
+        pendingSync = null;
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            fileOutputStream.getFD().sync();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void closeFile() {
+        if (pendingSync != null) {
+            pendingSync.cancel(false);
+        }
+        sync();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * Stops the journal after an error, the Game itself goes on without autosaving.
+     *
+     * @param e The error
+     */
+    private void fail(IOException e) {
+        e.printStackTrace();
+        failed = true;
+        out = null;
+        fileOutputStream = null;
+    }
+}
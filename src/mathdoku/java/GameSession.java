@@ -0,0 +1,194 @@
+package mathdoku.java;
+
+import java.util.ArrayList;
+
+/**
+ * GameSession is one headless game played on a GameState: the same actions as on the Board
+ * (moves, undo/redo, hints, mistakes and win detection), without JavaFX.
+ * <p>
+ * The methods are synchronized, so a session can be used from any thread of the SessionHost.
+ */
+public class GameSession {
+
+    /**
+     * The rule a move breaks, if any.
+     */
+    public enum Conflict {
+        NONE, ROW, COLUMN, CAGE
+    }
+
+    private final int id;
+    private final GameState state;
+    private final int[] solution;
+    private final long solutionHash;
+    private final int[] cageValues;
+    //Moves as {cell, old value, new value}
+    private final ArrayList<int[]> history = new ArrayList<>();
+    private final ArrayList<int[]> undone = new ArrayList<>();
+    private final WinTracker winTracker;
+
+    /**
+     * Creates a session with an empty Board.
+     *
+     * @param id       ID of the session
+     * @param puzzle   The Puzzle to be played
+     * @param solution The solution of the Puzzle (shared, not changed), used for hints
+     */
+    public GameSession(int id, Puzzle puzzle, int[] solution) {
+        this.id = id;
+        this.state = new GameState(puzzle);
+        this.solution = solution;
+        this.solutionHash = GameState.hashOf(solution);
+
+        //Follows every change, so undoing the winning move makes the Board unsolved again
+        this.winTracker = new WinTracker(state, null);
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.cageValues = new int[largestCage];
+    }
+
+    /**
+     * Sets the value of a Cell (0 clears it) and checks it against the rules.
+     *
+     * @param cell  Index of the Cell (CellID - 1)
+     * @param value The value to be set
+     * @return The rule the value breaks, or NONE
+     */
+    public synchronized Conflict move(int cell, int value) {
+        int old = state.getValue(cell);
+        state.setValue(cell, value);
+        history.add(new int[]{cell, old, value});
+        undone.clear();
+        return check(cell);
+    }
+
+    /**
+     * Cancels the last move.
+     *
+     * @return true - a move was undone, false - there was nothing to undo
+     */
+    public synchronized boolean undo() {
+        if (history.isEmpty()) {
+            return false;
+        }
+        int[] move = history.remove(history.size() - 1);
+        state.setValue(move[0], move[1]);
+        undone.add(move);
+        return true;
+    }
+
+    /**
+     * Makes the last undone move again.
+     *
+     * @return true - a move was redone, false - there was nothing to redo
+     */
+    public synchronized boolean redo() {
+        if (undone.isEmpty()) {
+            return false;
+        }
+        int[] move = undone.remove(undone.size() - 1);
+        state.setValue(move[0], move[2]);
+        history.add(move);
+        check(move[0]);
+        return true;
+    }
+
+    /**
+     * Corrects the first Cell that differs from the solution, as a move that can be undone.
+     *
+     * @return Index of the corrected Cell, or -1 if the Board is already solved
+     */
+    public synchronized int hint() {
+        if (state.getHash() == solutionHash) {
+            return -1;
+        }
+        for (int cell = 0; cell < solution.length; cell++) {
+            if (state.getValue(cell) != solution[cell]) {
+                move(cell, solution[cell]);
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the value of a Cell against its row, its column and (if it's full) its Cage.
+     * Whether the puzzle is won is followed by the WinTracker on every change.
+     *
+     * @param cell Index of the Cell
+     * @return The rule the value breaks, or NONE
+     */
+    private Conflict check(int cell) {
+        int value = state.getValue(cell);
+        if (value == 0) {
+            return Conflict.NONE;
+        }
+        Puzzle puzzle = state.getPuzzle();
+        int size = puzzle.getSize();
+        int row = cell / size;
+        int col = cell % size;
+        for (int i = 0; i < size; i++) {
+            if (row * size + i != cell && state.getValue(row * size + i) == value) {
+                return Conflict.ROW;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (i * size + col != cell && state.getValue(i * size + col) == value) {
+                return Conflict.COLUMN;
+            }
+        }
+        int cage = puzzle.getCageOf(cell);
+        if (cage >= 0) {
+            int[] cells = puzzle.getCageCells(cage);
+            for (int i = 0; i < cells.length; i++) {
+                cageValues[i] = state.getValue(cells[i]);
+                if (cageValues[i] == 0) {
+                    return Conflict.NONE;
+                }
+            }
+            if (!puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), cageValues, cells.length)) {
+                return Conflict.CAGE;
+            }
+        }
+        return Conflict.NONE;
+    }
+
+    /**
+     * Checks the whole Board against the rules.
+     *
+     * @return true - no rule is broken (empty Cells are fine), false - otherwise
+     */
+    public synchronized boolean isValid() {
+        for (int cell = 0; cell < solution.length; cell++) {
+            if (check(cell) != Conflict.NONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns a copy of the current values.
+     *
+     * @return The values (index = CellID - 1, 0 - empty)
+     */
+    public synchronized int[] getValues() {
+        return state.toGrid();
+    }
+
+    /**
+     * Checks whether the current values solve the puzzle, in constant time.
+     *
+     * @return true - every Cell is filled and no rule is broken, false - otherwise
+     */
+    public synchronized boolean isWon() {
+        return winTracker.isSolved();
+    }
+}
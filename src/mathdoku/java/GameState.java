@@ -0,0 +1,245 @@
+package mathdoku.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GameState holds the values one player has entered into a Puzzle.
+ * <p>
+ * The Puzzle (Cages, targets and the tables computed from them) is shared by all GameStates playing it,
+ * so every GameState only adds one byte per Cell (index = CellID - 1, 0 - empty Cell).
+ * <p>
+ * Listeners are told about every change of a value, so checks such as the WinTracker
+ * can follow the game incrementally instead of scanning the whole Board.
+ * <p>
+ * The values are also identified by a 64 bit Zobrist hash: every (Cell, value) pair has a fixed random key
+ * and the hash is the XOR of the keys of all filled Cells, updated in constant time on every change.
+ * Two Boards of the same Puzzle with the same hash have the same values (barring a 1 in 2^64 collision),
+ * so comparing the values with a solution is a single comparison with hashOf(solution).
+ */
+public class GameState {
+
+    /**
+     * Listens to the changes of the values of a GameState.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the value of a Cell has changed.
+         *
+         * @param cell     Index of the Cell (CellID - 1)
+         * @param oldValue The value before (0 - empty)
+         * @param newValue The value now (0 - empty)
+         */
+        void valueChanged(int cell, int oldValue, int newValue);
+    }
+
+    //Keys of the Zobrist hash for every Board size, index = cell * size + value - 1
+    //(fixed seeds, so hashes can be stored)
+    private static final Map<Integer, long[]> ZOBRIST_KEYS = new ConcurrentHashMap<>();
+
+    private final Puzzle puzzle;
+    private final byte[] values;
+    private final long[] keys;
+    private long hash = 0;
+    private ArrayList<Listener> listeners; //Created with the first listener, most GameStates have none
+
+    /**
+     * Creates a GameState with an empty Board.
+     *
+     * @param puzzle The Puzzle to be played (the shared instance is used)
+     */
+    public GameState(Puzzle puzzle) {
+        this.puzzle = Puzzle.intern(puzzle);
+        this.values = new byte[puzzle.getSize() * puzzle.getSize()];
+        this.keys = zobristKeys(puzzle.getSize());
+    }
+
+    /**
+     * Creates a copy of another GameState, sharing its Puzzle (but not its listeners).
+     *
+     * @param other The GameState to be copied
+     */
+    public GameState(GameState other) {
+        this.puzzle = other.puzzle;
+        this.values = other.values.clone();
+        this.hash = other.hash;
+        this.keys = other.keys;
+    }
+
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * Sets the value of a Cell.
+     *
+     * @param cell  Index of the Cell (CellID - 1)
+     * @param value The value (0 - clears the Cell)
+     */
+    public void setValue(int cell, int value) {
+        if (value < 0 || value > puzzle.getSize()) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        int oldValue = values[cell];
+        if (oldValue == value) {
+            return;
+        }
+        values[cell] = (byte) value;
+        hash ^= key(keys, puzzle.getSize(), cell, oldValue) ^ key(keys, puzzle.getSize(), cell, value);
+        if (listeners != null) {
+            for (Listener listener : listeners) {
+                listener.valueChanged(cell, oldValue, value);
+            }
+        }
+    }
+
+    /**
+     * Clears all Cells.
+     */
+    public void clear() {
+        if (listeners == null) {
+            Arrays.fill(values, (byte) 0);
+            hash = 0;
+            return;
+        }
+        for (int cell = 0; cell < values.length; cell++) {
+            setValue(cell, 0);
+        }
+    }
+
+    /**
+     * Returns the Zobrist hash of the values.
+     *
+     * @return The hash (0 - empty Board)
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the Zobrist hash of the given values, the same as getHash of a GameState holding them.
+     *
+     * @param grid Values of all Cells (index = CellID - 1, 0 - empty Cell)
+     * @return The hash
+     */
+    public static long hashOf(int[] grid) {
+        int size = (int) Math.round(Math.sqrt(grid.length));
+        long[] keys = zobristKeys(size);
+        long hash = 0;
+        for (int cell = 0; cell < grid.length; cell++) {
+            hash ^= key(keys, size, cell, grid[cell]);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the keys of the Zobrist hash for a Board size, creating them the first time.
+     *
+     * @param size Size of the Square Board NxN as N
+     * @return A key for every Cell and value, index = cell * size + value - 1
+     */
+    private static long[] zobristKeys(int size) {
+        return ZOBRIST_KEYS.computeIfAbsent(size, n ->
+                new SplittableRandom(0x6D617468646F6B75L + n).longs((long) n * n * n).toArray());
+    }
+
+    private static long key(long[] keys, int size, int cell, int value) {
+        return value == 0 ? 0 : keys[cell * size + value - 1];
+    }
+
+    /**
+     * Adds a listener to be told about every change of a value.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Returns the values as an int array, the way the solvers take them.
+     *
+     * @return A copy of the values
+     */
+    public int[] toGrid() {
+        int[] grid = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            grid[i] = values[i];
+        }
+        return grid;
+    }
+
+    /**
+     * Checks whether every Cell has a value.
+     *
+     * @return true - the Board is full, false - otherwise
+     */
+    public boolean isFull() {
+        for (byte value : values) {
+            if (value == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the puzzle is fully and correctly completed.
+     *
+     * @return true - solved, false - otherwise
+     */
+    public boolean isSolved() {
+        if (!isFull()) {
+            return false;
+        }
+        int size = puzzle.getSize();
+        for (int i = 0; i < size; i++) {
+            int rowSeen = 0;
+            int colSeen = 0;
+            for (int j = 0; j < size; j++) {
+                rowSeen |= 1 << values[i * size + j];
+                colSeen |= 1 << values[j * size + i];
+            }
+            if (Integer.bitCount(rowSeen) != size || Integer.bitCount(colSeen) != size) {
+                return false;
+            }
+        }
+
+        int[] cageValues = new int[values.length];
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            int[] cells = puzzle.getCageCells(cage);
+            for (int i = 0; i < cells.length; i++) {
+                cageValues[i] = values[cells[i]];
+            }
+            if (!puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), cageValues, cells.length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "GameState{" +
+                "puzzle=" + puzzle +
+                ", values=" + Arrays.toString(values) +
+                '}';
+    }
+}
@@ -1,25 +1,134 @@
 package mathdoku.java;
 
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
 
 public class Generator {
+    //Changes whenever the same seed would generate a different puzzle, so old PuzzleIds can be told apart
+    public static final int VERSION = 1;
+
     private Cell[] arrayOfCells;
     private int size;
     private ArrayList<String> allowed;
     private ArrayList<Cage> cages = new ArrayList<>();
     private int difficulty = 0;
+    private boolean[] inCage; //Cells already in a Cage, index = CellID - 1
+    private final SplittableRandom random;
 
     public Generator(Stage stage, int size, int difficulty) throws Exception {
+        this(size, difficulty);
+        openGame(stage);
+    }
+
+    /**
+     * Generates a new random puzzle without opening a Game,
+     * so it can be done on a background thread.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     */
+    public Generator(int size, int difficulty) {
+        this(size, difficulty, new SplittableRandom());
+    }
+
+    /**
+     * Generates a puzzle from the given random numbers without opening a Game.
+     * The same seed always gives the same puzzle (for the same VERSION).
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @param random     Source of all random choices, used only by this Generator
+     */
+    public Generator(int size, int difficulty, SplittableRandom random) {
         this.size = size;
         this.difficulty = difficulty;
+        this.random = random;
         generateAllowedNumbers();
         generateCells(size);
         genRowsCols();
         genCages();
         clearCells();
+    }
+
+    /**
+     * Starts a Game with a generated puzzle. If the PuzzlePool has one ready, the Game starts at once,
+     * otherwise the puzzle is generated on a background thread while a progress indicator is shown.
+     *
+     * @param stage      Stage where the Game is to be opened
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @throws Exception Exception is thrown in case something is wrong with the stage
+     */
+    public static void startGame(Stage stage, int size, int difficulty) throws Exception {
+        openWhenReady(stage, PuzzlePool.getInstance().take(size, difficulty));
+    }
+
+    /**
+     * Starts a Game with the puzzle of the given PuzzleId, generated on a background thread.
+     *
+     * @param stage Stage where the Game is to be opened
+     * @param id    The PuzzleId
+     * @throws Exception Exception is thrown in case something is wrong with the stage
+     */
+    public static void startGame(Stage stage, PuzzleId id) throws Exception {
+        openWhenReady(stage, CompletableFuture.supplyAsync(id::generate));
+    }
+
+    /**
+     * Opens a Game as soon as its puzzle is generated, showing a progress indicator until then.
+     *
+     * @param stage     Stage where the Game is to be opened
+     * @param generator The puzzle being generated
+     * @throws Exception Exception is thrown in case something is wrong with the stage
+     */
+    private static void openWhenReady(Stage stage, CompletableFuture<Generator> generator) throws Exception {
+        if (generator.isDone() && !generator.isCompletedExceptionally()) {
+            generator.get().openGame(stage);
+            return;
+        }
+
+        //Not generated yet: shows a progress window until it is
+        Stage progressStage = new Stage();
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        VBox vBox = new VBox(progressIndicator, new Label("Generating a new board..."));
+        vBox.setAlignment(Pos.CENTER);
+        vBox.setSpacing(10);
+        vBox.setPadding(new Insets(20, 20, 20, 20));
+        progressStage.setTitle("MathDoku");
+        progressStage.setResizable(false);
+        progressStage.setScene(new Scene(vBox));
+        progressStage.show();
+
+        generator.whenComplete((ready, error) -> Platform.runLater(() -> {
+            progressStage.close();
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            try {
+                ready.openGame(stage);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    /**
+     * Opens a Game with the generated puzzle.
+     *
+     * @param stage Stage where the Game is to be opened
+     * @throws Exception Exception is thrown in case something is wrong with the stage
+     */
+    public void openGame(Stage stage) throws Exception {
         new Game(stage, size, allowed, arrayOfCells, cages, difficulty);
     }
 
@@ -53,7 +162,7 @@ public class Generator {
                 neighbours.add(cell1);
             }
         }
-        int randomNum = ThreadLocalRandom.current().nextInt(0, neighbours.size());
+        int randomNum = random.nextInt(0, neighbours.size());
 
         return neighbours.get(randomNum);
     }
@@ -72,13 +181,14 @@ public class Generator {
      * Generates random Cages with assigned targets
      */
     private void genCages() {
+        inCage = new boolean[arrayOfCells.length];
         int cellsInCages = 0;
 
         while (cellsInCages < arrayOfCells.length) {
             cellsInCages = 0;
 
-            for (Cell cell : arrayOfCells) {
-                if (cell.isInCage()) {
+            for (boolean caged : inCage) {
+                if (caged) {
                     cellsInCages++;
                 }
             }
@@ -100,27 +210,30 @@ public class Generator {
     private Cage generateRandomCage() {
         ArrayList<Cell> cells = new ArrayList<>();
         for (Cell cell : arrayOfCells) {
-            if (!cell.isInCage()) {
+            if (!inCage[cell.getCellID() - 1]) {
                 cells.add(cell);
                 if (hasNeighbours(cell)) {
                     int randomNum;
 
                     if (difficulty == 1) {
-                        randomNum = ThreadLocalRandom.current().nextInt(1, 2);
+                        randomNum = random.nextInt(1, 2);
                     } else if (difficulty == 2) {
-                        randomNum = ThreadLocalRandom.current().nextInt(2, 3);
+                        randomNum = random.nextInt(2, 3);
                     } else {
-                        randomNum = ThreadLocalRandom.current().nextInt(4, 8);
+                        randomNum = random.nextInt(4, 8);
                     }
 
                     for (int i = 0; i < randomNum; i++) {
                         Cell neighbourCell = getRandomNeighbour(cell);
-                        if (neighbourCell != null && !cells.contains(neighbourCell) && !neighbourCell.isInCage()) {
+                        if (neighbourCell != null && !cells.contains(neighbourCell) && !inCage[neighbourCell.getCellID() - 1]) {
                             cells.add(neighbourCell);
                         }
                     }
                 }
                 if (!cells.isEmpty()) {
+                    for (Cell cageCell : cells) {
+                        inCage[cageCell.getCellID() - 1] = true;
+                    }
                     return new Cage(cells);
                 }
                 break;
@@ -138,7 +251,7 @@ public class Generator {
     private boolean genRowsCols() {
         for (Cell arrayOfCell : arrayOfCells) {
             if (arrayOfCell.getValue() == 0) {
-                Collections.shuffle(allowed);
+                shuffle(allowed);
                 for (String s : allowed) {
                     arrayOfCell.setValue(Integer.parseInt(s));
                     if (checkCols() && checkRows() && genRowsCols()) {
@@ -153,6 +266,18 @@ public class Generator {
         return true;
     }
 
+    /**
+     * Shuffles a list with the random numbers of this Generator (Fisher-Yates),
+     * as Collections.shuffle only takes a java.util.Random.
+     *
+     * @param list The list to be shuffled
+     */
+    private void shuffle(List<String> list) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            Collections.swap(list, i, random.nextInt(i + 1));
+        }
+    }
+
     /**
      * Generates a random target for the given Cage.
      *
@@ -210,7 +335,7 @@ public class Generator {
                 total = total - cells.get(i).getValue();
             }
         } else {
-            int randomNum = ThreadLocalRandom.current().nextInt(0, 2);
+            int randomNum = random.nextInt(0, 2);
             switch (randomNum) {
                 case 0:
                     multiplier = "+";
@@ -319,4 +444,20 @@ public class Generator {
         }
     }
 
+    public Cell[] getArrayOfCells() {
+        return arrayOfCells;
+    }
+
+    public ArrayList<Cage> getCages() {
+        return cages;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
 }
@@ -0,0 +1,131 @@
+package mathdoku.java;
+
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.HashMap;
+
+/**
+ * GlyphCache draws short strings (digits, Cage labels, notes) from images rendered once,
+ * instead of laying the text out again on every repaint.
+ * <p>
+ * Every string is rendered the first time it's drawn, with the Font, colour and stroke of the cache,
+ * at the output scale of the screen so it stays sharp on HiDPI displays.
+ * The images don't depend on the size of the Cells, only where they're drawn does,
+ * so a cache only has to be replaced when the font size changes.
+ */
+public class GlyphCache {
+    private final Font font;
+    private final Color color;
+    private final double lineWidth;
+    private final HashMap<String, Image> glyphs = new HashMap<>();
+    private double scale = 1;
+
+    /**
+     * Creates an empty GlyphCache.
+     *
+     * @param font      The Font of the text
+     * @param color     The colour of the text
+     * @param lineWidth The width of the stroke of the text, or 0 to fill it instead
+     */
+    public GlyphCache(Font font, Color color, double lineWidth) {
+        this.font = font;
+        this.color = color;
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Draws a string centered on the given point, the same as strokeText/fillText with
+     * TextAlignment.CENTER and VPos.CENTER would.
+     *
+     * @param gc      Where the string is drawn
+     * @param text    The string
+     * @param centerX X coordinate of the center of the string
+     * @param centerY Y coordinate of the center of the string
+     * @param scale   The output scale of the screen (1 - no scaling)
+     */
+    public void draw(GraphicsContext gc, String text, double centerX, double centerY, double scale) {
+        Image image = get(text, scale);
+        double width = image.getWidth() / scale;
+        double height = image.getHeight() / scale;
+        gc.drawImage(image, centerX - width / 2, centerY - height / 2, width, height);
+    }
+
+    /**
+     * Returns the width a string takes on the Canvas, measured from its image.
+     *
+     * @param text  The string
+     * @param scale The output scale of the screen (1 - no scaling)
+     * @return The width, including a small padding around the text
+     */
+    public double getWidth(String text, double scale) {
+        return get(text, scale).getWidth() / scale;
+    }
+
+    /**
+     * Returns the height a string takes on the Canvas, measured from its image.
+     *
+     * @param text  The string
+     * @param scale The output scale of the screen (1 - no scaling)
+     * @return The height, including a small padding around the text
+     */
+    public double getHeight(String text, double scale) {
+        return get(text, scale).getHeight() / scale;
+    }
+
+    /**
+     * Returns the image of a string, rendering it the first time.
+     * All images are rendered again when the output scale changes (the window moved to another screen).
+     *
+     * @param text  The string
+     * @param scale The output scale of the screen
+     * @return The image
+     */
+    private Image get(String text, double scale) {
+        if (scale != this.scale) {
+            glyphs.clear();
+            this.scale = scale;
+        }
+        return glyphs.computeIfAbsent(text, this::render);
+    }
+
+    /**
+     * Renders a string into a transparent image just large enough for it (and its stroke).
+     *
+     * @param text The string
+     * @return The image, at the output scale
+     */
+    private Image render(String text) {
+        Text measure = new Text(text);
+        measure.setFont(font);
+        double padding = lineWidth + 2;
+        double width = Math.ceil(measure.getLayoutBounds().getWidth() + 2 * padding);
+        double height = Math.ceil(measure.getLayoutBounds().getHeight() + 2 * padding);
+
+        Canvas canvas = new Canvas(Math.ceil(width * scale), Math.ceil(height * scale));
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.scale(scale, scale);
+        gc.setFont(font);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        if (lineWidth > 0) {
+            gc.setLineWidth(lineWidth);
+            gc.setStroke(color);
+            gc.strokeText(text, width / 2, height / 2);
+        } else {
+            gc.setFill(color);
+            gc.fillText(text, width / 2, height / 2);
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(parameters, null);
+    }
+}
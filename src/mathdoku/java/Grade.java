@@ -0,0 +1,128 @@
+package mathdoku.java;
+
+import java.util.Locale;
+
+/**
+ * Grade rates how hard a Puzzle is to solve by running the LogicSolver on it.
+ * <p>
+ * The score adds up the effort: every step of a technique is weighted by how hard the technique is,
+ * and puzzles the LogicSolver can't finish (so guessing is needed) get an extra penalty.
+ * The level is based on the hardest technique needed and the effort:
+ * 1 - Easy: at most one round of cage combinations, the rest is singles
+ * 2 - Medium: several rounds of cage combinations
+ * 3 - Hard: hidden sets are needed, or the LogicSolver can't finish the puzzle at all
+ * Puzzles with more than one solution get level 0, as they are not valid MathDoku puzzles.
+ */
+public class Grade {
+    private static final int[] TECHNIQUE_WEIGHTS = {1, 4, 12};
+    private static final int GUESSING_PENALTY = 40;
+    private static final int EASY_MAX_CAGE_STEPS = 1;
+
+    private final LogicSolver.Technique hardest;
+    private final int[] steps;
+    private final boolean logicSolved;
+    private final boolean unique;
+    private final int score;
+    private final int level;
+
+    private Grade(LogicSolver.Technique hardest, int[] steps, boolean logicSolved, boolean unique) {
+        this.hardest = hardest;
+        this.steps = steps;
+        this.logicSolved = logicSolved;
+        this.unique = unique;
+
+        int score = logicSolved ? 0 : GUESSING_PENALTY;
+        for (int i = 0; i < steps.length; i++) {
+            score += steps[i] * TECHNIQUE_WEIGHTS[i];
+        }
+        this.score = score;
+
+        if (!unique) {
+            this.level = 0;
+        } else if (!logicSolved || hardest == LogicSolver.Technique.HIDDEN_SETS) {
+            this.level = 3;
+        } else if (steps[LogicSolver.Technique.CAGE_COMBINATIONS.ordinal()] <= EASY_MAX_CAGE_STEPS) {
+            this.level = 1;
+        } else {
+            this.level = 2;
+        }
+    }
+
+    /**
+     * Grades the given Puzzle.
+     *
+     * @param puzzle The Puzzle to be graded
+     * @return The Grade of the Puzzle
+     */
+    public static Grade of(Puzzle puzzle) {
+        return of(puzzle, SolveBudget.UNLIMITED);
+    }
+
+    /**
+     * Grades the given Puzzle, with a budget for the search of the uniqueness check.
+     * If the budget runs out, the Puzzle is treated as not unique (level 0).
+     *
+     * @param puzzle The Puzzle to be graded
+     * @param budget The SolveBudget of the uniqueness check
+     * @return The Grade of the Puzzle
+     */
+    public static Grade of(Puzzle puzzle, SolveBudget budget) {
+        LogicSolver logicSolver = new LogicSolver(puzzle);
+        boolean logicSolved = logicSolver.solve();
+
+        //If logic alone is not enough, the rest is searched to make sure there is exactly one solution
+        boolean unique = logicSolved;
+        if (!logicSolved && !logicSolver.isContradiction()) {
+            unique = SolverEngine.fastestFor(puzzle.getSize()).create(puzzle)
+                    .countSolutions(logicSolver.getGrid(), 2, budget).isUnique();
+        }
+
+        LogicSolver.Technique[] techniques = LogicSolver.Technique.values();
+        int[] steps = new int[techniques.length];
+        for (int i = 0; i < techniques.length; i++) {
+            steps[i] = logicSolver.getSteps(techniques[i]);
+        }
+        return new Grade(logicSolver.getHardest(), steps, logicSolved, unique);
+    }
+
+    /**
+     * Checks whether the level of the Grade is within the given band.
+     *
+     * @param minLevel The lowest accepted level
+     * @param maxLevel The highest accepted level
+     * @return true - within the band, false - otherwise
+     */
+    public boolean isWithin(int minLevel, int maxLevel) {
+        return level >= minLevel && level <= maxLevel;
+    }
+
+    public LogicSolver.Technique getHardest() {
+        return hardest;
+    }
+
+    public int getSteps(LogicSolver.Technique technique) {
+        return steps[technique.ordinal()];
+    }
+
+    public boolean isLogicSolved() {
+        return logicSolved;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Grade{level=%d, score=%d, hardest=%s, logicSolved=%b, unique=%b}",
+                level, score, hardest, logicSolved, unique);
+    }
+}
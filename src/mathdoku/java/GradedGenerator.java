@@ -0,0 +1,242 @@
+package mathdoku.java;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GradedGenerator keeps generating puzzles (on all cores by default) until one of them is graded
+ * within the wanted difficulty band (see Grade for the levels).
+ * <p>
+ * Puzzles with more than one solution, or whose uniqueness can't be proved within UNIQUENESS_BUDGET,
+ * are never accepted. If no puzzle hits the band within MAX_ATTEMPTS,
+ * the unique puzzle with the closest level is used instead.
+ */
+public class GradedGenerator {
+    private static final int MAX_ATTEMPTS = 2000;
+
+    //Uniqueness checks of generated 8x8 Hard puzzles take a few hundred nodes, puzzles over this are rejected.
+    //Nodes rather than time, so the same seed still gives the same puzzle on a slow machine
+    static final SolveBudget UNIQUENESS_BUDGET = SolveBudget.ofNodes(1_000_000);
+
+    /**
+     * The accepted puzzle together with how hard it was to find.
+     */
+    public static class Result {
+        private final Generator generator;
+        private final Grade grade;
+        private final long attempts;
+        private final long accepted;
+
+        Result(Generator generator, Grade grade, long attempts, long accepted) {
+            this.generator = generator;
+            this.grade = grade;
+            this.attempts = attempts;
+            this.accepted = accepted;
+        }
+
+        public Generator getGenerator() {
+            return generator;
+        }
+
+        public Grade getGrade() {
+            return grade;
+        }
+
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Returns the share of generated puzzles that were within the band.
+         *
+         * @return The acceptance rate (0 to 1)
+         */
+        public double getAcceptanceRate() {
+            return attempts == 0 ? 0 : (double) accepted / attempts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Result{%s, attempts=%d, acceptanceRate=%.1f%%}",
+                    grade, attempts, getAcceptanceRate() * 100);
+        }
+    }
+
+    /**
+     * Generates a puzzle graded within the given band, using all available cores.
+     *
+     * @param size     Size of the Square Board NxN as N (from 2 to 8)
+     * @param minLevel The lowest accepted level (1 to 3)
+     * @param maxLevel The highest accepted level (1 to 3)
+     * @return The accepted puzzle with its Grade and the acceptance rate
+     */
+    public static Result generate(int size, int minLevel, int maxLevel) {
+        return generate(size, minLevel, maxLevel, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Generates a puzzle graded within the given band.
+     * Worker threads get the priority of the calling thread, a single worker is the calling thread itself.
+     *
+     * @param size     Size of the Square Board NxN as N (from 2 to 8)
+     * @param minLevel The lowest accepted level (1 to 3)
+     * @param maxLevel The highest accepted level (1 to 3)
+     * @param workers  The number of threads generating puzzles
+     * @return The accepted puzzle with its Grade and the acceptance rate
+     */
+    public static Result generate(int size, int minLevel, int maxLevel, int workers) {
+        return generate(size, minLevel, maxLevel, new SplittableRandom().nextLong(), workers);
+    }
+
+    /**
+     * Generates the puzzle of the given seed, graded within the given band.
+     * <p>
+     * Attempt k uses the k-th stream split off a SplittableRandom made from the seed, and the attempt
+     * with the lowest k within the band wins, so the result only depends on the seed
+     * (and the Generator VERSION), never on the number of workers or how their threads were scheduled.
+     *
+     * @param size     Size of the Square Board NxN as N (from 2 to 8)
+     * @param minLevel The lowest accepted level (1 to 3)
+     * @param maxLevel The highest accepted level (1 to 3)
+     * @param seed     The seed
+     * @param workers  The number of threads generating puzzles
+     * @return The accepted puzzle with its Grade and the acceptance rate
+     */
+    public static Result generate(int size, int minLevel, int maxLevel, long seed, int workers) {
+        //Level 0 would accept puzzles with more than one solution
+        int lowest = Math.max(1, minLevel);
+        int highest = Math.max(lowest, maxLevel);
+
+        //Cage sizes of the Generator are a good first guess for the wanted level
+        int difficulty = Math.max(1, Math.min(3, (lowest + highest) / 2));
+
+        SplittableRandom root = new SplittableRandom(seed);
+        AtomicLong attempts = new AtomicLong();
+        AtomicLong accepted = new AtomicLong();
+        Object lock = new Object();
+
+        //Guarded by the lock: the next attempt to hand out, the lowest attempt within the band
+        //and the closest attempt outside of it
+        long[] next = {0};
+        long[] foundAt = {MAX_ATTEMPTS};
+        long[] closestAt = {MAX_ATTEMPTS};
+        Generator[] found = new Generator[1];
+        Grade[] foundGrade = new Grade[1];
+        Generator[] closest = new Generator[1];
+        Grade[] closestGrade = new Grade[1];
+
+        Runnable worker = () -> {
+            while (true) {
+                long attempt;
+                SplittableRandom random;
+                synchronized (lock) {
+                    //Attempts after one within the band can't change the result any more
+                    if (next[0] >= foundAt[0]) {
+                        return;
+                    }
+                    attempt = next[0]++;
+                    random = root.split();
+                }
+                attempts.incrementAndGet();
+
+                Generator generator = new Generator(size, difficulty, random);
+                Grade grade = Grade.of(Puzzle.fromCages(size, generator.getCages()), UNIQUENESS_BUDGET);
+                boolean within = grade.isWithin(lowest, highest);
+                if (within) {
+                    accepted.incrementAndGet();
+                }
+                synchronized (lock) {
+                    if (within && attempt < foundAt[0]) {
+                        found[0] = generator;
+                        foundGrade[0] = grade;
+                        foundAt[0] = attempt;
+                    } else if (!within && isCloser(grade, attempt, closestGrade[0], closestAt[0], lowest, highest)) {
+                        closest[0] = generator;
+                        closestGrade[0] = grade;
+                        closestAt[0] = attempt;
+                    }
+                }
+            }
+        };
+
+        if (workers <= 1) {
+            //No threads of its own, the caller does the work at its own priority (such as the PuzzlePool producer)
+            worker.run();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "graded-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                executor.invokeAll(Collections.nCopies(workers, Executors.callable(worker)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        long total = Math.min(attempts.get(), MAX_ATTEMPTS);
+        if (found[0] != null) {
+            return new Result(found[0], foundGrade[0], total, accepted.get());
+        }
+        if (closest[0] != null) {
+            return new Result(closest[0], closestGrade[0], total, accepted.get());
+        }
+
+        //Without any unique puzzle at all, falls back to a plain one
+        Generator plain = new Generator(size, difficulty, new SplittableRandom(seed));
+        return new Result(plain, Grade.of(Puzzle.fromCages(size, plain.getCages()), UNIQUENESS_BUDGET), total,
+                accepted.get());
+    }
+
+    /**
+     * Checks whether a Grade is closer to the band than the best one so far.
+     *
+     * Ties go to the earlier attempt, so the choice doesn't depend on the order the attempts finish in.
+     *
+     * @param grade       The new Grade
+     * @param attempt     The attempt of the new Grade
+     * @param best        The best Grade so far (can be null)
+     * @param bestAttempt The attempt of the best Grade
+     * @param minLevel    The lowest accepted level
+     * @param maxLevel    The highest accepted level
+     * @return true - the new Grade is closer, false - otherwise
+     */
+    private static boolean isCloser(Grade grade, long attempt, Grade best, long bestAttempt, int minLevel, int maxLevel) {
+        if (!grade.isUnique()) {
+            return false;
+        }
+        if (best == null) {
+            return true;
+        }
+        int distance = distance(grade, minLevel, maxLevel);
+        int bestDistance = distance(best, minLevel, maxLevel);
+        return distance < bestDistance || distance == bestDistance && attempt < bestAttempt;
+    }
+
+    private static int distance(Grade grade, int minLevel, int maxLevel) {
+        return Math.max(0, Math.max(minLevel - grade.getLevel(), grade.getLevel() - maxLevel));
+    }
+
+    /**
+     * Generates one puzzle of every size and level and reports the acceptance rates.
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        System.out.println("size,level,attempts,acceptanceRate,timeMs,grade");
+        for (int size = 2; size <= 8; size++) {
+            for (int level = 1; level <= 3; level++) {
+                long start = System.nanoTime();
+                Result result = generate(size, level, level);
+                System.out.printf(Locale.ROOT, "%d,%d,%d,%.3f,%.1f,%s%n", size, level, result.getAttempts(),
+                        result.getAcceptanceRate(), (System.nanoTime() - start) / 1_000_000.0, result.getGrade());
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package mathdoku.java;
+
+/**
+ * HintEngine finds the next value a player can work out from the values already on the Board,
+ * together with the reason, the way a person would explain it.
+ * <p>
+ * It keeps a LogicSolver between calls. While the player only adds values, they are placed into it
+ * and the candidates ruled out so far are kept, together with the hardest technique that ruled them out,
+ * so a hint that relies on them still names it; any other change starts it again from the Board.
+ * A hint first looks for a value that is forced right now:
+ * 1. Naked single - a Cell with one candidate left
+ * 2. Hidden single - a value with one place left in a row/column
+ * 3. Line sum - a row/column adds up to 1 + 2 + ... + N, so when all its other Cells are known
+ * (filled, or covered by + Cages that lie inside it) the last one is the difference
+ * Only when none is found, candidates are ruled out one round at a time (LogicSolver.prune)
+ * and the search is repeated, so a hint does no more work than needed to find one value.
+ */
+public class HintEngine {
+
+    /**
+     * Why the value of a Deduction is forced.
+     */
+    public enum Reason {
+        NAKED_SINGLE, HIDDEN_SINGLE_ROW, HIDDEN_SINGLE_COLUMN, ROW_SUM, COLUMN_SUM
+    }
+
+    /**
+     * A value that can be worked out, with the reason.
+     */
+    public static final class Deduction {
+        private final int cell;
+        private final int value;
+        private final Reason reason;
+        private final LogicSolver.Technique pruned;
+        private final int size;
+
+        private Deduction(int cell, int value, Reason reason, LogicSolver.Technique pruned, int size) {
+            this.cell = cell;
+            this.value = value;
+            this.reason = reason;
+            this.pruned = pruned;
+            this.size = size;
+        }
+
+        public int getCell() {
+            return cell;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * Returns the hardest technique that has ruled out candidates the value might rely on,
+         * in this hint or in earlier ones on the same candidates.
+         *
+         * @return The technique, or null if the value was forced by the values on the Board alone
+         */
+        public LogicSolver.Technique getPruned() {
+            return pruned;
+        }
+
+        /**
+         * Explains the Deduction to the player.
+         *
+         * @return For example "Row 2, column 3 is 4: it's the only place left for 4 in the row."
+         */
+        public String describe() {
+            String because;
+            switch (reason) {
+                case NAKED_SINGLE:
+                    because = "it's the only value left for the Cell";
+                    break;
+                case HIDDEN_SINGLE_ROW:
+                    because = "it's the only place left for " + value + " in the row";
+                    break;
+                case HIDDEN_SINGLE_COLUMN:
+                    because = "it's the only place left for " + value + " in the column";
+                    break;
+                case ROW_SUM:
+                    because = "the row adds up to " + size * (size + 1) / 2
+                            + " and its other Cells and + Cages account for the rest";
+                    break;
+                default:
+                    because = "the column adds up to " + size * (size + 1) / 2
+                            + " and its other Cells and + Cages account for the rest";
+                    break;
+            }
+            String text = "Row " + (cell / size + 1) + ", column " + (cell % size + 1) + " is " + value + ": "
+                    + because + ".";
+            if (pruned != null) {
+                text += " (After ruling out values with " + pruned.toString().toLowerCase() + ".)";
+            }
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return describe();
+        }
+    }
+
+    private final Puzzle puzzle;
+    private final int size;
+    private LogicSolver solver;
+    private int[] synced;
+    //The hardest technique applied to the candidates of the solver since it was started from the Board
+    private LogicSolver.Technique applied;
+
+    /**
+     * Creates a HintEngine.
+     *
+     * @param puzzle The Puzzle the hints are for
+     */
+    public HintEngine(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+    }
+
+    /**
+     * Finds the next value that can be worked out from the given values.
+     *
+     * @param grid Values of all Cells (index = CellID - 1, 0 - empty Cell), left as they are
+     * @return The Deduction, or null if nothing can be worked out without guessing (or the values break a rule)
+     */
+    public Deduction next(int[] grid) {
+        sync(grid);
+        while (!solver.isContradiction()) {
+            Deduction deduction = findPlacement(grid, applied);
+            if (deduction != null) {
+                return deduction;
+            }
+            LogicSolver.Technique technique = solver.prune();
+            if (technique == null) {
+                return null;
+            }
+            if (applied == null || technique.compareTo(applied) > 0) {
+                applied = technique;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Brings the LogicSolver up to the given values, keeping its candidates if values were only added.
+     *
+     * @param grid Values of all Cells
+     */
+    private void sync(int[] grid) {
+        boolean added = solver != null;
+        for (int cell = 0; added && cell < grid.length; cell++) {
+            if (synced[cell] != 0 && grid[cell] != synced[cell]) {
+                added = false;
+            }
+        }
+        if (added) {
+            for (int cell = 0; cell < grid.length && added; cell++) {
+                if (synced[cell] == 0 && grid[cell] != 0) {
+                    int known = solver.getGrid()[cell];
+                    if (known == 0) {
+                        solver.assume(cell, grid[cell]);
+                    } else if (known != grid[cell]) {
+                        added = false;
+                    }
+                    synced[cell] = grid[cell];
+                }
+            }
+        }
+        if (!added) {
+            solver = new LogicSolver(puzzle, grid);
+            synced = grid.clone();
+            applied = null;
+        }
+    }
+
+    /**
+     * Looks for a value that is forced by the current candidates, in a Cell that is empty on the Board.
+     *
+     * @param grid   Values of all Cells on the Board
+     * @param pruned The hardest technique applied to the candidates so far
+     * @return The Deduction, or null if there is none
+     */
+    private Deduction findPlacement(int[] grid, LogicSolver.Technique pruned) {
+        int[] known = solver.getGrid();
+        int[] candidates = solver.getCandidates();
+
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] == 0 && Integer.bitCount(candidates[cell]) == 1) {
+                return new Deduction(cell, Integer.numberOfTrailingZeros(candidates[cell]), Reason.NAKED_SINGLE,
+                        pruned, size);
+            }
+        }
+
+        for (int unit = 0; unit < 2 * size; unit++) {
+            for (int value = 1; value <= size; value++) {
+                int place = -1;
+                int places = 0;
+                for (int i = 0; i < size && places < 2; i++) {
+                    int cell = unitCell(unit, i);
+                    if (known[cell] == value) {
+                        places = 2;
+                    } else if (known[cell] == 0 && (candidates[cell] & (1 << value)) != 0) {
+                        place = cell;
+                        places++;
+                    }
+                }
+                if (places == 1) {
+                    return new Deduction(place, value,
+                            unit < size ? Reason.HIDDEN_SINGLE_ROW : Reason.HIDDEN_SINGLE_COLUMN, pruned, size);
+                }
+            }
+        }
+
+        for (int unit = 0; unit < 2 * size; unit++) {
+            Deduction deduction = findLineSum(unit, known, candidates, pruned);
+            if (deduction != null) {
+                return deduction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Works out the last unknown Cell of a row/column from the sum of the row/column,
+     * counting + Cages that lie inside it by their targets.
+     *
+     * @param unit       Index of the row (0 to N-1) or column (N to 2N-1)
+     * @param known      Values known to the LogicSolver
+     * @param candidates Candidates of all Cells
+     * @param pruned     The hardest technique applied to the candidates so far
+     * @return The Deduction, or null if more than one Cell (or none) is unknown
+     */
+    private Deduction findLineSum(int unit, int[] known, int[] candidates, LogicSolver.Technique pruned) {
+        int sum = 0;
+        int covered = 0;
+        for (int i = 0; i < size; i++) {
+            int cage = puzzle.getCageOf(unitCell(unit, i));
+            if ((covered & (1 << i)) != 0 || cage < 0 || puzzle.getOperator(cage) != Operator.ADD
+                    || !isInside(puzzle.getCageCells(cage), unit)) {
+                continue;
+            }
+            sum += puzzle.getTargetValue(cage);
+            for (int j = i; j < size; j++) {
+                if (puzzle.getCageOf(unitCell(unit, j)) == cage) {
+                    covered |= 1 << j;
+                }
+            }
+        }
+
+        int unknown = -1;
+        for (int i = 0; i < size; i++) {
+            int cell = unitCell(unit, i);
+            if ((covered & (1 << i)) != 0) {
+                continue;
+            }
+            if (known[cell] != 0) {
+                sum += known[cell];
+            } else if (unknown >= 0) {
+                return null;
+            } else {
+                unknown = cell;
+            }
+        }
+
+        int value = size * (size + 1) / 2 - sum;
+        if (unknown < 0 || value < 1 || value > size || (candidates[unknown] & (1 << value)) == 0) {
+            return null;
+        }
+        return new Deduction(unknown, value, unit < size ? Reason.ROW_SUM : Reason.COLUMN_SUM, pruned, size);
+    }
+
+    private boolean isInside(int[] cells, int unit) {
+        for (int cell : cells) {
+            if (unit < size ? cell / size != unit : cell % size != unit - size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the i-th Cell of a unit, where units 0 to N-1 are rows and N to 2N-1 are columns.
+     *
+     * @param unit Index of the unit
+     * @param i    Position of the Cell in the unit
+     * @return Index of the Cell
+     */
+    private int unitCell(int unit, int i) {
+        return unit < size ? unit * size + i : i * size + (unit - size);
+    }
+}
@@ -0,0 +1,258 @@
+package mathdoku.java;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HintPrecomputer works out the next hint in the background after every change of a GameState,
+ * so pressing Hint is answered from the cache instead of solving the puzzle there and then.
+ * <p>
+ * The solution is found once, within the SolveBudget. A value that differs from it is pointed out first,
+ * otherwise the hint is the next value the HintEngine can work out by logic, with its explanation.
+ * Only if logic alone is stuck the hint falls back to the first empty Cell of the solution.
+ * Hints are cached by the values of the Board, so undoing back to an earlier Board is answered from the cache too.
+ * <p>
+ * The work runs on a single low priority thread. Changes that come faster than it keeps up with are coalesced:
+ * only the latest Board is ever computed, the ones in between are dropped without being started.
+ */
+public class HintPrecomputer implements GameState.Listener {
+    private static final int CACHE_SIZE = 32;
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(
+            PuzzlePool.threadFactory("hint-precompute", Thread.MIN_PRIORITY));
+
+    /**
+     * A hint: the Cell to be filled or corrected, its value and why.
+     */
+    public static final class Hint {
+        private final int cell;
+        private final int value;
+        private final SolveResult result;
+        private final String explanation;
+
+        private Hint(int cell, int value, SolveResult result, String explanation) {
+            this.cell = cell;
+            this.value = value;
+            this.result = result;
+            this.explanation = explanation;
+        }
+
+        /**
+         * Returns the Cell to be filled or corrected.
+         *
+         * @return Index of the Cell (CellID - 1), or -1 if there is nothing to correct or no solution
+         */
+        public int getCell() {
+            return cell;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the result of the Solver the hint comes from.
+         *
+         * @return The SolveResult, not solved if the solution couldn't be found within the SolveBudget
+         */
+        public SolveResult getResult() {
+            return result;
+        }
+
+        /**
+         * Explains the hint to the player.
+         *
+         * @return The explanation, empty if there is no hint
+         */
+        public String getExplanation() {
+            return explanation;
+        }
+    }
+
+    private final GameState state;
+    private final SolverEngine solverEngine;
+    private final SolveBudget budget;
+    private final HintEngine engine;
+    private final AtomicReference<int[]> pending = new AtomicReference<>();
+    //Least recently used Boards are dropped first
+    private final Map<Key, Hint> cache = new LinkedHashMap<Key, Hint>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Hint> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private SolveResult result;
+    private int[] solution;
+
+    /**
+     * Creates a HintPrecomputer, starts listening to the GameState and precomputes the hint for its current values.
+     *
+     * @param state        The GameState to be followed
+     * @param solverEngine The SolverEngine used to find the solution
+     * @param budget       The SolveBudget of finding the solution
+     */
+    public HintPrecomputer(GameState state, SolverEngine solverEngine, SolveBudget budget) {
+        this.state = state;
+        this.solverEngine = solverEngine;
+        this.budget = budget;
+        this.engine = new HintEngine(state.getPuzzle());
+        state.addListener(this);
+        schedule(state.toGrid());
+    }
+
+    @Override
+    public void valueChanged(int cell, int oldValue, int newValue) {
+        schedule(state.toGrid());
+    }
+
+    /**
+     * Queues the hint of the given values, replacing the Board queued before if it hasn't been started yet.
+     *
+     * @param grid Values of all Cells, owned by the HintPrecomputer from now on
+     */
+    private void schedule(int[] grid) {
+        if (pending.getAndSet(grid) == null) {
+            WORKER.execute(() -> {
+                int[] latest = pending.getAndSet(null);
+                if (latest != null) {
+                    hintFor(latest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the hint for the given values, from the cache if it has been computed already.
+     *
+     * @param grid Values of all Cells (index = CellID - 1, 0 - empty Cell), left as they are
+     * @return The hint
+     */
+    public Hint hintFor(int[] grid) {
+        Key key = new Key(grid);
+        synchronized (cache) {
+            Hint cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Hint hint = compute(grid);
+        synchronized (cache) {
+            cache.put(key, hint);
+        }
+        return hint;
+    }
+
+    /**
+     * Works out the hint for the given values: a mistake, a value forced by logic, or a value from the solution.
+     *
+     * @param grid Values of all Cells
+     * @return The hint
+     */
+    private Hint compute(int[] grid) {
+        SolveResult found = solve();
+        if (!found.isSolved()) {
+            return new Hint(-1, 0, found, "");
+        }
+        int size = state.getPuzzle().getSize();
+        for (int i = 0; i < grid.length; i++) {
+            if (grid[i] != 0 && grid[i] != solution[i]) {
+                return new Hint(i, solution[i], found, "Row " + (i / size + 1) + ", column " + (i % size + 1)
+                        + " is not right, it should be " + solution[i] + ".");
+            }
+        }
+
+        HintEngine.Deduction deduction;
+        synchronized (engine) {
+            deduction = engine.next(grid);
+        }
+        if (deduction != null) {
+            return new Hint(deduction.getCell(), deduction.getValue(), found, deduction.describe());
+        }
+        for (int i = 0; i < grid.length; i++) {
+            if (grid[i] == 0) {
+                return new Hint(i, solution[i], found, "Row " + (i / size + 1) + ", column " + (i % size + 1)
+                        + " is " + solution[i] + ". It can't be worked out by simple logic from here,"
+                        + " it comes from the solution.");
+            }
+        }
+        return new Hint(-1, 0, found, "");
+    }
+
+    /**
+     * Finds the solution from an empty Board, the first time it's needed.
+     *
+     * @return The result of the Solver
+     */
+    public synchronized SolveResult solve() {
+        if (result == null) {
+            int[] grid = new int[state.getPuzzle().getSize() * state.getPuzzle().getSize()];
+            result = solverEngine.create(state.getPuzzle()).solve(grid, budget);
+            if (result.isSolved()) {
+                solution = grid;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the solution on the background thread, so the caller never waits for the Solver.
+     *
+     * @return The result of the Solver, already completed if the solution has been looked for before
+     */
+    public CompletableFuture<SolveResult> solveAsync() {
+        synchronized (this) {
+            if (result != null) {
+                return CompletableFuture.completedFuture(result);
+            }
+        }
+        return CompletableFuture.supplyAsync(this::solve, WORKER);
+    }
+
+    /**
+     * Returns the solution, finding it first if needed.
+     *
+     * @return Values of all Cells in the solution, or null if it couldn't be found within the SolveBudget
+     */
+    public int[] getSolution() {
+        solve();
+        synchronized (this) {
+            return solution;
+        }
+    }
+
+    /**
+     * Stops following the GameState. A computation already running is finished, but nothing new is started.
+     */
+    public void detach() {
+        state.removeListener(this);
+        pending.set(null);
+    }
+
+    /**
+     * The values of a Board as a key of the cache.
+     */
+    private static final class Key {
+        private final int[] grid;
+        private final long hash;
+
+        private Key(int[] grid) {
+            this.grid = grid.clone();
+            this.hash = GameState.hashOf(grid);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && Arrays.equals(grid, ((Key) o).grid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HostLoadTest drives a SessionHost with many simultaneous clients, each playing its own session
+ * of the same Puzzle (random moves, undos, redos and hints), and reports the throughput and latencies.
+ * <p>
+ * Usage: HostLoadTest [--in-process] [sessions] [movesPerSession] [puzzleFile]
+ * By default every client talks to the host over a loopback socket.
+ */
+public class HostLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        boolean inProcess = args.length > 0 && args[0].equals("--in-process");
+        int first = inProcess ? 1 : 0;
+        int sessions = args.length > first ? Integer.parseInt(args[first]) : 1000;
+        int moves = args.length > first + 1 ? Integer.parseInt(args[first + 1]) : 200;
+        String puzzleFile = args.length > first + 2 ? args[first + 2] : "src/mathdoku/resources/puzzles/size8x8/8x8.txt";
+
+        Puzzle puzzle = Puzzle.readFile(puzzleFile);
+        String newCommand = "NEW " + puzzle.toText().replace('\n', ';');
+
+        try (SessionHost host = new SessionHost()) {
+            int port = inProcess ? 0 : host.listen(0);
+            long[][] latencies = new long[sessions][];
+            CountDownLatch ready = new CountDownLatch(sessions);
+            CountDownLatch go = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(sessions);
+            ExecutorService clients = SessionHost.newThreadPerTaskExecutor("load-test-client");
+
+            for (int i = 0; i < sessions; i++) {
+                int client = i;
+                clients.execute(() -> {
+                    try (Connection connection = inProcess ? host::execute : new SocketConnection(port)) {
+                        String id = connection.send(newCommand).substring(3);
+                        ready.countDown();
+                        go.await();
+                        latencies[client] = play(connection, id, puzzle.getSize(), moves, new SplittableRandom(client));
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        ready.countDown();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            done.await();
+            long elapsed = System.nanoTime() - start;
+            clients.shutdown();
+            clients.awaitTermination(10, TimeUnit.SECONDS);
+
+            long[] all = Arrays.stream(latencies).filter(l -> l != null).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf(Locale.ROOT, "mode=%s sessions=%d moves=%d%n", inProcess ? "in-process" : "loopback",
+                    sessions, all.length);
+            System.out.printf(Locale.ROOT, "throughput=%.0f moves/s%n", all.length / (elapsed / 1e9));
+            System.out.printf(Locale.ROOT, "latency p50=%.1fus p99=%.1fus max=%.1fus%n",
+                    percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, all.length == 0 ? 0 : all[all.length - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Plays random actions in one session and measures how long every reply takes.
+     *
+     * @param connection The connection to the host
+     * @param id         ID of the session
+     * @param size       Size of the Board
+     * @param moves      The number of actions
+     * @param random     Source of the actions
+     * @return Latencies of all actions in nanoseconds
+     * @throws IOException Exception is thrown if the connection breaks
+     */
+    private static long[] play(Connection connection, String id, int size, int moves, SplittableRandom random)
+            throws IOException {
+        long[] latencies = new long[moves];
+        for (int i = 0; i < moves; i++) {
+            int action = random.nextInt(10);
+            String command;
+            if (action < 7) {
+                command = "SET " + id + " " + random.nextInt(size * size) + " " + random.nextInt(1, size + 1);
+            } else if (action == 7) {
+                command = "UNDO " + id;
+            } else if (action == 8) {
+                command = "REDO " + id;
+            } else {
+                command = "HINT " + id;
+            }
+            long start = System.nanoTime();
+            String reply = connection.send(command);
+            latencies[i] = System.nanoTime() - start;
+            if (!reply.startsWith("OK")) {
+                throw new IOException("Unexpected reply: " + reply);
+            }
+        }
+        connection.send("CLOSE " + id);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * A way of sending commands to the host.
+     */
+    private interface Connection extends AutoCloseable {
+        String send(String command) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * A client connected to the host over the loopback interface.
+     */
+    private static class SocketConnection implements Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        SocketConnection(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String send(String command) throws IOException {
+            out.write(command);
+            out.newLine();
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new EOFException("The host has closed the connection");
+            }
+            return reply;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
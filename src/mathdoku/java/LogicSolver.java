@@ -0,0 +1,460 @@
+package mathdoku.java;
+
+/**
+ * LogicSolver solves a Puzzle the way a person would, without guessing.
+ * <p>
+ * Every Cell keeps its candidates as a bitmask (bit v set - the value v is still possible).
+ * The Solver repeatedly applies the easiest technique that makes progress:
+ * 1. Singles - a Cell with one candidate left, or a value with one place left in a row/column
+ * 2. Cage combinations - candidates that are not part of any filling of their Cage that reaches the target
+ * 3. Hidden sets - k values of a row/column that fit in only k Cells, so those Cells can't hold anything else
+ * <p>
+ * It stops when the puzzle is solved or when none of the techniques helps anymore.
+ */
+public class LogicSolver {
+
+    /**
+     * Techniques of the LogicSolver, from the easiest to the hardest.
+     */
+    public enum Technique {
+        SINGLES("Singles"),
+        CAGE_COMBINATIONS("Cage combinations"),
+        HIDDEN_SETS("Hidden sets");
+
+        private final String label;
+
+        Technique(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final Puzzle puzzle;
+    private final int size;
+    private final int[] grid;
+    private final int[] candidates;
+    private final int[] steps = new int[Technique.values().length];
+    private Technique hardest;
+    private boolean contradiction = false;
+
+    //Scratch space for enumerating Cage fillings
+    private final int[] fillingValues;
+    private final int[] supported;
+    private final int[] cageMasks;
+    //Shared with copies, which are only used on the same thread
+    private final CageOracle oracle;
+
+    /**
+     * Creates a LogicSolver for an empty Board.
+     *
+     * @param puzzle The Puzzle to be solved
+     */
+    public LogicSolver(Puzzle puzzle) {
+        this(puzzle, new int[puzzle.getSize() * puzzle.getSize()]);
+    }
+
+    /**
+     * Creates a LogicSolver starting from the given values.
+     *
+     * @param puzzle The Puzzle to be solved
+     * @param values Values of all Cells (0 - empty), they are not changed by the LogicSolver
+     */
+    public LogicSolver(Puzzle puzzle, int[] values) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+        this.grid = new int[size * size];
+        this.candidates = new int[size * size];
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.fillingValues = new int[largestCage];
+        this.supported = new int[largestCage];
+        this.cageMasks = new int[largestCage];
+        this.oracle = new CageOracle(puzzle);
+
+        int allValues = ((1 << (size + 1)) - 1) & ~1;
+        for (int cell = 0; cell < candidates.length; cell++) {
+            candidates[cell] = allValues;
+        }
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] != 0) {
+                place(cell, values[cell]);
+            }
+        }
+
+        //One Cell Cages are given values
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            int[] cells = puzzle.getCageCells(cage);
+            if (cells.length == 1 && grid[cells[0]] == 0) {
+                place(cells[0], puzzle.getTargetValue(cage));
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of another LogicSolver, so a guess can be tried without changing the original.
+     *
+     * @param other The LogicSolver to be copied
+     */
+    public LogicSolver(LogicSolver other) {
+        this.puzzle = other.puzzle;
+        this.size = other.size;
+        this.grid = other.grid.clone();
+        this.candidates = other.candidates.clone();
+        System.arraycopy(other.steps, 0, steps, 0, steps.length);
+        this.hardest = other.hardest;
+        this.contradiction = other.contradiction;
+        this.fillingValues = new int[other.fillingValues.length];
+        this.supported = new int[other.supported.length];
+        this.cageMasks = new int[other.cageMasks.length];
+        this.oracle = other.oracle;
+    }
+
+    /**
+     * Puts a guessed value into a Cell (used by searches built on top of the LogicSolver).
+     *
+     * @param cell  Index of the Cell
+     * @param value The value to be placed
+     */
+    public void assume(int cell, int value) {
+        place(cell, value);
+    }
+
+    /**
+     * Applies techniques until the puzzle is solved or none of them makes progress.
+     *
+     * @return true - solved, false - stuck or the values contradict each other
+     */
+    public boolean solve() {
+        while (!isSolved() && step() != null) {
+            //Keeps going while the techniques make progress
+        }
+        return isSolved();
+    }
+
+    /**
+     * Applies the easiest technique that makes progress.
+     *
+     * @return The technique that was applied, or null if none of them helped
+     */
+    public Technique step() {
+        if (contradiction || isSolved()) {
+            return null;
+        }
+        Technique technique = null;
+        if (applySingles()) {
+            technique = Technique.SINGLES;
+        } else if (applyCageCombinations()) {
+            technique = Technique.CAGE_COMBINATIONS;
+        } else if (applyHiddenSets()) {
+            technique = Technique.HIDDEN_SETS;
+        }
+        if (technique != null) {
+            steps[technique.ordinal()]++;
+            if (hardest == null || technique.compareTo(hardest) > 0) {
+                hardest = technique;
+            }
+        }
+        return technique;
+    }
+
+    /**
+     * Removes candidates with the easiest technique that can, without placing any values
+     * (used by the HintEngine, which looks for the values to be placed itself).
+     *
+     * @return The technique that was applied, or null if none of them removed anything
+     */
+    public Technique prune() {
+        if (contradiction) {
+            return null;
+        }
+        if (applyCageCombinations()) {
+            return Technique.CAGE_COMBINATIONS;
+        }
+        if (applyHiddenSets()) {
+            return Technique.HIDDEN_SETS;
+        }
+        return null;
+    }
+
+    /**
+     * Puts a value into a Cell and removes it from the candidates of its row and column.
+     *
+     * @param cell  Index of the Cell
+     * @param value The value to be placed
+     */
+    private void place(int cell, int value) {
+        if ((candidates[cell] & (1 << value)) == 0) {
+            contradiction = true;
+        }
+        grid[cell] = value;
+        candidates[cell] = 1 << value;
+
+        int row = cell / size;
+        int col = cell % size;
+        for (int i = 0; i < size; i++) {
+            eliminate(row * size + i, value);
+            eliminate(i * size + col, value);
+        }
+    }
+
+    /**
+     * Removes a candidate from an empty Cell.
+     *
+     * @param cell  Index of the Cell
+     * @param value The candidate to be removed
+     */
+    private void eliminate(int cell, int value) {
+        if (grid[cell] == 0) {
+            candidates[cell] &= ~(1 << value);
+            if (candidates[cell] == 0) {
+                contradiction = true;
+            }
+        }
+    }
+
+    /**
+     * Places naked singles (one candidate left in a Cell)
+     * and hidden singles (one place left for a value in a row/column).
+     *
+     * @return true - at least one value was placed, false - otherwise
+     */
+    private boolean applySingles() {
+        boolean progress = false;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] == 0 && Integer.bitCount(candidates[cell]) == 1) {
+                place(cell, Integer.numberOfTrailingZeros(candidates[cell]));
+                progress = true;
+            }
+        }
+
+        for (int unit = 0; unit < 2 * size; unit++) {
+            for (int value = 1; value <= size; value++) {
+                int place = -1;
+                int places = 0;
+                for (int i = 0; i < size && places < 2; i++) {
+                    int cell = unitCell(unit, i);
+                    if (grid[cell] == value) {
+                        places = 2;
+                    } else if (grid[cell] == 0 && (candidates[cell] & (1 << value)) != 0) {
+                        place = cell;
+                        places++;
+                    }
+                }
+                if (places == 1) {
+                    place(place, value);
+                    progress = true;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Removes candidates that are not part of any filling of their Cage that reaches the target.
+     *
+     * @return true - at least one candidate was removed, false - otherwise
+     */
+    private boolean applyCageCombinations() {
+        boolean progress = false;
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            int[] cells = puzzle.getCageCells(cage);
+            boolean full = true;
+            for (int cell : cells) {
+                if (grid[cell] == 0) {
+                    full = false;
+                    break;
+                }
+            }
+            if (full) {
+                continue;
+            }
+
+            for (int i = 0; i < cells.length; i++) {
+                supported[i] = 0;
+                cageMasks[i] = candidates[cells[i]];
+            }
+            boolean large = CageOracle.isWorthAsking(cageMasks, cells.length);
+            if (!large || oracle.restrict(cage, cageMasks)) {
+                enumerateFillings(cage, cells, 0, large ? oracle.start(cage) : -1);
+            }
+            for (int i = 0; i < cells.length; i++) {
+                int cell = cells[i];
+                if (grid[cell] == 0 && (candidates[cell] & supported[i]) != candidates[cell]) {
+                    candidates[cell] &= supported[i];
+                    if (candidates[cell] == 0) {
+                        contradiction = true;
+                    }
+                    progress = true;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Tries every candidate of every Cell of the Cage (Cells that share a row/column get different values)
+     * and marks the candidates of the fillings that reach the target as supported.
+     * In a Cage with many possible fillings only candidates the CageOracle supports are tried, and only while
+     * it says the rest of the Cage can still reach the target. Other Cages are cut off by Operator.canReach.
+     *
+     * @param cage  Index of the Cage
+     * @param cells Cells of the Cage
+     * @param index Index (in the Cage) of the Cell to be filled next
+     * @param state The state of the CageOracle after the values filled so far, -1 if it's not asked
+     * @return true - at least one filling was found, false - otherwise
+     */
+    private boolean enumerateFillings(int cage, int[] cells, int index, int state) {
+        if (index == cells.length) {
+            return puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), fillingValues, cells.length);
+        }
+
+        boolean found = false;
+        int cell = cells[index];
+        int options = cageMasks[index];
+        for (int j = 0; j < index; j++) {
+            if (sameLine(cell, cells[j])) {
+                options &= ~(1 << fillingValues[j]);
+            }
+        }
+        while (options != 0) {
+            int value = Integer.numberOfTrailingZeros(options);
+            options &= options - 1;
+            fillingValues[index] = value;
+            int next = state < 0 ? -1 : oracle.next(cage, state, value);
+            boolean reachable = state < 0
+                    ? puzzle.getOperator(cage).canReach(puzzle.getTargetValue(cage), fillingValues, index + 1,
+                    cells.length, size)
+                    : next >= 0 && oracle.canFinish(index + 1, next);
+            if (reachable && enumerateFillings(cage, cells, index + 1, next)) {
+                supported[index] |= 1 << value;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Restricts k Cells to k values when those values fit nowhere else in a row/column (k = 2 or 3).
+     *
+     * @return true - at least one candidate was removed, false - otherwise
+     */
+    private boolean applyHiddenSets() {
+        boolean progress = false;
+        for (int unit = 0; unit < 2 * size; unit++) {
+            int open = 0;
+            for (int i = 0; i < size; i++) {
+                int cell = unitCell(unit, i);
+                if (grid[cell] == 0) {
+                    open |= candidates[cell];
+                }
+            }
+            for (int set = open; set != 0; set = (set - 1) & open) {
+                int k = Integer.bitCount(set);
+                if (k < 2 || k > 3) {
+                    continue;
+                }
+                int places = 0;
+                int placeCount = 0;
+                for (int i = 0; i < size; i++) {
+                    int cell = unitCell(unit, i);
+                    if (grid[cell] == 0 && (candidates[cell] & set) != 0) {
+                        places |= 1 << i;
+                        placeCount++;
+                    }
+                }
+                if (placeCount != k) {
+                    continue;
+                }
+                for (int i = 0; i < size; i++) {
+                    int cell = unitCell(unit, i);
+                    if ((places & (1 << i)) != 0 && (candidates[cell] & ~set) != 0) {
+                        candidates[cell] &= set;
+                        progress = true;
+                    }
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Finds the i-th Cell of a unit, where units 0 to N-1 are rows and N to 2N-1 are columns.
+     *
+     * @param unit Index of the unit
+     * @param i    Position of the Cell in the unit
+     * @return Index of the Cell
+     */
+    private int unitCell(int unit, int i) {
+        return unit < size ? unit * size + i : i * size + (unit - size);
+    }
+
+    private boolean sameLine(int cell1, int cell2) {
+        return cell1 / size == cell2 / size || cell1 % size == cell2 % size;
+    }
+
+    /**
+     * Checks whether all Cells are filled in. The full Board is also checked against the Cage targets,
+     * as singles alone never look at them.
+     *
+     * @return true - solved, false - otherwise
+     */
+    public boolean isSolved() {
+        if (contradiction) {
+            return false;
+        }
+        for (int value : grid) {
+            if (value == 0) {
+                return false;
+            }
+        }
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            int[] cells = puzzle.getCageCells(cage);
+            for (int i = 0; i < cells.length; i++) {
+                fillingValues[i] = grid[cells[i]];
+            }
+            if (!puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), fillingValues, cells.length)) {
+                contradiction = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isContradiction() {
+        return contradiction;
+    }
+
+    /**
+     * Returns the number of times the given technique made progress.
+     *
+     * @param technique The technique
+     * @return The number of steps
+     */
+    public int getSteps(Technique technique) {
+        return steps[technique.ordinal()];
+    }
+
+    /**
+     * Returns the hardest technique that has been needed so far.
+     *
+     * @return The hardest technique, or null if none has been applied
+     */
+    public Technique getHardest() {
+        return hardest;
+    }
+
+    public int[] getGrid() {
+        return grid;
+    }
+
+    public int[] getCandidates() {
+        return candidates;
+    }
+}
@@ -17,8 +17,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.time.LocalDate;
 
 
 /**
@@ -97,11 +96,15 @@ public class Menu extends Application {
         //Menubar (have to specify javaFX path, since the class is also called Menu
         javafx.scene.control.Menu file = new javafx.scene.control.Menu("File");
         javafx.scene.control.Menu help = new javafx.scene.control.Menu("Help");
+        MenuItem resume = new MenuItem("Resume last game");
+        resume.setDisable(!GameJournal.hasSavedGame());
+        MenuItem daily = new MenuItem("Daily puzzle");
+        MenuItem loadFromId = new MenuItem("Load from puzzle id");
         MenuItem loadFromFile = new MenuItem("Load from file");
         MenuItem loadFromInput = new MenuItem("Load from text input");
         MenuItem quit = new MenuItem("Quit");
         MenuItem howTo = new MenuItem("What is MathDoku?");
-        file.getItems().addAll(loadFromFile, loadFromInput, quit);
+        file.getItems().addAll(resume, daily, loadFromId, loadFromFile, loadFromInput, quit);
         help.getItems().addAll(howTo);
         MenuBar menuBar = new MenuBar();
         menuBar.getMenus().addAll(file, help);
@@ -123,6 +126,10 @@ public class Menu extends Application {
 
         /* ------- Functionality Setup (Event Handlers)  ------- */
 
+        //As soon as both options are chosen, starts preparing puzzles in the background
+        boardSizeBox.setOnAction(actionEvent -> warmPuzzlePool(boardSizeBox, difficultyBox));
+        difficultyBox.setOnAction(actionEvent -> warmPuzzlePool(boardSizeBox, difficultyBox));
+
         //When the Start button is pressed, opens Game in the same stage
         start.setOnAction(actionEvent -> {
             int difficulty = 0;
@@ -135,7 +142,7 @@ public class Menu extends Application {
             if (boardSize != 0 && difficulty != 0) {
                 try {
                     //Starts the Game with the chosen difficulty and boarder size
-                    new Generator(stage, boardSize, difficulty);
+                    Generator.startGame(stage, boardSize, difficulty);
 
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -195,6 +202,53 @@ public class Menu extends Application {
             System.exit(0);
         });
 
+        //When resume is pressed, opens the autosaved Game where it was left
+        resume.setOnAction(actionEvent -> {
+            try {
+                new Game(stage, GameJournal.load());
+            } catch (IOException e) {
+                errorMsg("The last game could not be resumed.");
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        //When daily puzzle is pressed, opens today's puzzle with the chosen options (the same for everyone)
+        daily.setOnAction(actionEvent -> {
+            int size = getBoardSize(boardSizeBox);
+            int difficulty = getDifficulty(difficultyBox);
+            if (size != 0 && difficulty != 0) {
+                try {
+                    Generator.startGame(stage, PuzzleId.daily(PuzzleId.dailyNumber(LocalDate.now()), size, difficulty));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            } else {
+                errorMsg("You have to choose one of the options for the board size and difficulty level!");
+            }
+        });
+
+        //When load from puzzle id is pressed, asks for the id and generates its puzzle again
+        loadFromId.setOnAction(actionEvent -> {
+            TextInputDialog dialog = new TextInputDialog();
+            dialog.setTitle("Load From Puzzle Id");
+            dialog.setHeaderText("Enter a puzzle id, for example 6x6-2-3hx0r9t4kq1m-v1");
+            dialog.showAndWait().ifPresent(text -> {
+                try {
+                    PuzzleId id = PuzzleId.parse(text);
+                    if (id.getVersion() != Generator.VERSION) {
+                        errorMsg("This puzzle id was made by another version of the game.");
+                        return;
+                    }
+                    Generator.startGame(stage, id);
+                } catch (IllegalArgumentException e) {
+                    errorMsg(e.getMessage());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+        });
+
         //When load from the file is pressed, opens up a file chooser window
         loadFromFile.setOnAction(actionEvent -> {
             FileChooser fileChooser = new FileChooser();
@@ -253,94 +307,19 @@ public class Menu extends Application {
     }
 
     /**
-     * Traverses a puzzle file line by line to check the formatting.
+     * Checks the formatting of a puzzle file, pops up an error message if it's not correct.
      *
      * @param filename Path to the puzzle file
      * @return true - file is correctly formatted, false - otherwise
-     * @throws IOException Exception is thrown if there is a problem with the file
      */
-    private boolean checkFile(String filename) throws IOException {
-        try (FileInputStream fileInputStream = new FileInputStream(filename);
-             InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, StandardCharsets.UTF_8);
-             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-
-            //An ArrayList to store all CellIDs in the file
-            ArrayList<Integer> allCellIDs = new ArrayList<>();
-
-            //Stores the total number of lines in the txt file
-            int numberOfLines = 0;
-
-            //Stores the largest CellID in the ArrayList
-            int largestID = 0;
-
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                //Increments a number of lines
-                numberOfLines++;
-
-                //Trimming the line from leading and trailing whitespaces
-                String trimmedLine = line.trim();
-
-                //Target is a substring until the first whitespace
-                String target = trimmedLine.substring(0, trimmedLine.indexOf(' '));
-
-                //CellIDs are everything after the first whitespace
-                String cellIDs = trimmedLine.substring(trimmedLine.indexOf(' ') + 1);
-
-                //Creating an array of CellIDs, also trimming any extra whitespaces
-                String[] cellIDsArray = cellIDs.trim().split("\\s*,\\s*");
-
-                //Checks that Cages without an arithmetic operator only have one Cell ID
-                if (target.length() == 1 && cellIDsArray.length > 1) {
-                    errorMsg("Cages without an arithmetic operator must only have one Cell ID");
-                    return false;
-                }
-
-                //Adding all CellIDs from current line to an ArrayList of all CellIDs
-                for (String cellID : cellIDsArray) {
-                    allCellIDs.add(Integer.parseInt(cellID));
-                }
-            }
-
-            //Checking an array of Cell Ids for duplicates
-            if (Toolbox.findDuplicates(allCellIDs)) {
-                errorMsg("You can't have the same Cell being assigned to more than one Cage!");
-                return false;
-            }
-
-            //Finds the largest CellID in the file
-            for (int cellID : allCellIDs) {
-                if (cellID > largestID) {
-                    largestID = cellID;
-                }
-            }
-
-            //The number of cells must be equal to the largest CellID
-            if (allCellIDs.size() != largestID) {
-                errorMsg("Some Cell IDs might be missing, please check the formatting guide!");
-                return false;
-            }
-
-            //Calculates the Board size for the Game
-            this.boardSize = (int) Math.sqrt(largestID);
-            if (Math.pow(boardSize, 2) != largestID) {
-                errorMsg("The largest Cell ID is not a perfect square!");
-                return false;
-            }
-
-            //Checks the number of lines in the file
-            if (numberOfLines == 0) {
-                errorMsg("You can't have an empty input!");
-                return false;
-            } else if (numberOfLines > 64) {
-                errorMsg("Too many lines, please check the formatting guide!");
-            }
-
-        } catch (Exception e) {
-            errorMsg("There is a problem with your input, please check the formatting guide!");
+    private boolean checkFile(String filename) {
+        try {
+            this.boardSize = PuzzleChecker.checkFile(filename);
+            return true;
+        } catch (PuzzleChecker.FormatException e) {
+            errorMsg(e.getMessage());
             return false;
         }
-        return true;
     }
 
     /**
@@ -355,6 +334,20 @@ public class Menu extends Application {
         errorAlert.showAndWait();
     }
 
+    /**
+     * Asks the PuzzlePool to prepare puzzles for the chosen options, if both are chosen.
+     *
+     * @param boardSizeBox  The ComboBox where the board size is chosen
+     * @param difficultyBox The ComboBox where the difficulty is chosen
+     */
+    private void warmPuzzlePool(ComboBox<String> boardSizeBox, ComboBox<String> difficultyBox) {
+        int size = getBoardSize(boardSizeBox);
+        int difficulty = getDifficulty(difficultyBox);
+        if (size != 0 && difficulty != 0) {
+            PuzzlePool.getInstance().warm(size, difficulty);
+        }
+    }
+
     /**
      * Transforms the difficulty chosen by the user from String to int.
      * null -> 0
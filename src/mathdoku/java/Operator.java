@@ -0,0 +1,172 @@
+package mathdoku.java;
+
+/**
+ * Arithmetic operator of a Cage, written after the target in the puzzle files (for example "11+" or "2÷").
+ * <p>
+ * A Cage that consists of a single Cell has no operator, its target is simply the value of that Cell.
+ */
+public enum Operator {
+    NONE(""),
+    ADD("+"),
+    SUBTRACT("-"),
+    MULTIPLY("x"),
+    DIVIDE("\u00f7");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Finds the operator of the given Cage target.
+     *
+     * @param target A target in the puzzle file format, such as "11+" or "3"
+     * @return The operator of the target
+     */
+    public static Operator fromTarget(String target) {
+        switch (target.charAt(target.length() - 1)) {
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case 'x':
+            case '*':
+                return MULTIPLY;
+            case '\u00f7':
+            case '/':
+                return DIVIDE;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * Extracts the number of the given Cage target (the target without its operator).
+     *
+     * @param target A target in the puzzle file format, such as "11+" or "3"
+     * @return The number of the target
+     */
+    public static int targetValue(String target) {
+        if (fromTarget(target) == NONE) {
+            return Integer.parseInt(target);
+        }
+        return Integer.parseInt(target.substring(0, target.length() - 1));
+    }
+
+    /**
+     * Checks whether the given values reach the target with this operator.
+     * For - and ÷ the largest value comes first and the rest are taken away from it / divide it.
+     *
+     * @param target The number of the target
+     * @param values The values of the Cells of a Cage
+     * @param count  The number of values to be used from the array
+     * @return true - the target is reached, false - otherwise
+     */
+    public boolean matches(int target, int[] values, int count) {
+        int largest = 0;
+        int sum = 0;
+        long product = 1;
+        for (int i = 0; i < count; i++) {
+            largest = Math.max(largest, values[i]);
+            sum += values[i];
+            product *= values[i];
+        }
+        return reaches(target, largest, sum, product, count, count == 0 ? 0 : values[0]);
+    }
+
+    /**
+     * Checks whether the values of the given Cells of a Board reach the target with this operator,
+     * reading them straight from the Board instead of copying them.
+     *
+     * @param target The number of the target
+     * @param grid   Values of all Cells of the Board
+     * @param cells  Indexes of the Cells of the Cage
+     * @return true - the target is reached, false - otherwise
+     */
+    public boolean matchesCells(int target, int[] grid, int[] cells) {
+        int largest = 0;
+        int sum = 0;
+        long product = 1;
+        for (int cell : cells) {
+            int value = grid[cell];
+            largest = Math.max(largest, value);
+            sum += value;
+            product *= value;
+        }
+        return reaches(target, largest, sum, product, cells.length, cells.length == 0 ? 0 : grid[cells[0]]);
+    }
+
+    /**
+     * Checks the target against the totals of the values of a Cage.
+     *
+     * @param target  The number of the target
+     * @param largest The largest value
+     * @param sum     The sum of the values
+     * @param product The product of the values
+     * @param count   The number of values
+     * @param first   The first value (for Cages without an operator)
+     * @return true - the target is reached, false - otherwise
+     */
+    private boolean reaches(int target, int largest, int sum, long product, int count, int first) {
+        switch (this) {
+            case ADD:
+                return sum == target;
+            case MULTIPLY:
+                return product == target;
+            case SUBTRACT:
+                return largest - (sum - largest) == target;
+            case DIVIDE:
+                return largest != 0 && (long) target * (product / largest) == largest;
+            default:
+                return count == 1 && first == target;
+        }
+    }
+
+    /**
+     * Checks whether a partly filled Cage can still reach the target.
+     * Only + and x are cut off early, - and ÷ are always checked once the Cage is full.
+     *
+     * @param target The number of the target
+     * @param values The values filled in so far, first in the array
+     * @param filled The number of values filled in
+     * @param total  The number of Cells in the Cage
+     * @param size   The largest value allowed on the Board
+     * @return false - the target can't be reached anymore, true - it still might be
+     */
+    public boolean canReach(int target, int[] values, int filled, int total, int size) {
+        int left = total - filled;
+        switch (this) {
+            case ADD: {
+                int sum = 0;
+                for (int i = 0; i < filled; i++) {
+                    sum += values[i];
+                }
+                return sum + left <= target && sum + left * size >= target;
+            }
+            case MULTIPLY: {
+                long product = 1;
+                for (int i = 0; i < filled; i++) {
+                    product *= values[i];
+                }
+                return target % product == 0;
+            }
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Builds a target in the puzzle file format from a number and this operator.
+     *
+     * @param value The number of the target
+     * @return The target, such as "11+" or "3"
+     */
+    public String toTarget(int value) {
+        return value + symbol;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+}
@@ -0,0 +1,117 @@
+package mathdoku.java;
+
+/**
+ * PropagationSolver runs the LogicSolver until it gets stuck and only then guesses:
+ * it picks the empty Cell with the fewest candidates, tries each of them on a copy
+ * of the LogicSolver and continues recursively.
+ */
+public class PropagationSolver implements SolverBackend {
+    private final Puzzle puzzle;
+    private SolverMetrics metrics;
+    private int[] solution;
+
+    public PropagationSolver(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.metrics = new SolverMetrics(puzzle);
+    }
+
+    @Override
+    public SolveResult solve(int[] grid, SolveBudget budget) {
+        SolveResult result = run(grid, 1, budget);
+        if (result.isSolved()) {
+            System.arraycopy(solution, 0, grid, 0, grid.length);
+        }
+        return result;
+    }
+
+    @Override
+    public SolveResult countSolutions(int[] grid, int limit, SolveBudget budget) {
+        return run(grid, limit, budget);
+    }
+
+    /**
+     * Searches for solutions that agree with the given values.
+     *
+     * @param grid   Values of all Cells (left as they are)
+     * @param limit  The search stops once this many solutions are found
+     * @param budget The SolveBudget of the run
+     * @return The result of the run
+     */
+    private SolveResult run(int[] grid, int limit, SolveBudget budget) {
+        metrics = new SolverMetrics(puzzle);
+        SolverEvent event = new SolverEvent();
+        event.begin();
+        long start = System.nanoTime();
+        metrics.limit(budget, start);
+
+        SolveResult result;
+        solution = null;
+        try {
+            int found = search(new LogicSolver(puzzle, grid), 0, limit);
+            metrics.finish(found > 0, System.nanoTime() - start);
+            result = SolveResult.finished(found, metrics);
+        } catch (SolveBudget.ExceededException e) {
+            metrics.finishExceeded(System.nanoTime() - start);
+            result = SolveResult.exceeded(metrics);
+        }
+        event.finish(SolverEngine.PROPAGATION.name(), puzzle, metrics);
+        return result;
+    }
+
+    /**
+     * Propagates the given state, then branches on the Cell with the fewest candidates.
+     *
+     * @param state The LogicSolver holding the current values and candidates
+     * @param depth The number of guesses made so far
+     * @param limit The number of solutions still wanted
+     * @return The number of solutions found (at most limit)
+     */
+    private int search(LogicSolver state, int depth, int limit) {
+        while (!state.isSolved() && state.step() != null) {
+            metrics.propagation();
+            metrics.step();
+        }
+        if (state.isContradiction()) {
+            return 0;
+        }
+        if (state.isSolved()) {
+            if (solution == null) {
+                solution = state.getGrid().clone();
+            }
+            metrics.solution();
+            return 1;
+        }
+
+        int[] grid = state.getGrid();
+        int[] candidates = state.getCandidates();
+        int branchCell = -1;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] == 0 && (branchCell < 0
+                    || Integer.bitCount(candidates[cell]) < Integer.bitCount(candidates[branchCell]))) {
+                branchCell = cell;
+            }
+        }
+
+        int found = 0;
+        int options = candidates[branchCell];
+        while (options != 0 && found < limit) {
+            int value = Integer.numberOfTrailingZeros(options);
+            options &= options - 1;
+
+            metrics.node(depth + 1);
+            LogicSolver guess = new LogicSolver(state);
+            guess.assume(branchCell, value);
+            int foundHere = search(guess, depth + 1, limit - found);
+            if (foundHere == 0) {
+                metrics.backtrack();
+            }
+            found += foundHere;
+        }
+        return found;
+    }
+
+    @Override
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+}
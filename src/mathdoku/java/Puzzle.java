@@ -0,0 +1,328 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Puzzle is the layout of a MathDoku Board without any values entered:
+ * the size of the Board and its Cages (a target and a list of Cells for every Cage).
+ * <p>
+ * Cells of a Cage are stored as indexes into the Board (CellID - 1),
+ * in the same order as they are listed in the puzzle file.
+ * <p>
+ * Text format (one Cage per line, the same as Board.readFile understands):
+ * "target cellID,cellID,..." , for example "11+ 1,7".
+ * <p>
+ * A Puzzle is immutable, so one instance can be shared by any number of games (see GameState),
+ * each of them only keeping its own values. intern returns the shared instance of equal Puzzles.
+ */
+public class Puzzle {
+    //Sides of a Cell that lie on the border of its Cage (see getCageBorders)
+    public static final int BORDER_TOP = 1;
+    public static final int BORDER_RIGHT = 2;
+    public static final int BORDER_BOTTOM = 4;
+    public static final int BORDER_LEFT = 8;
+
+    private final int size;
+    private final String[] targets;
+    private final int[][] cageCells;
+    private final Operator[] operators;
+    private final int[] targetValues;
+    private final int[] cageOf;
+    private final int[] labelCells;
+    private final byte[] cageBorders;
+    private final int hash;
+
+    //Shared instances, dropped once no game uses them anymore
+    private static final Map<Puzzle, WeakReference<Puzzle>> INTERNED = new WeakHashMap<>();
+
+    /**
+     * Creates a new Puzzle.
+     *
+     * @param size      The number of Cells in each row/column
+     * @param targets   Targets of all Cages (such as "11+")
+     * @param cageCells Indexes of the Cells (CellID - 1) of every Cage
+     */
+    public Puzzle(int size, String[] targets, int[][] cageCells) {
+        if (targets.length != cageCells.length) {
+            throw new IllegalArgumentException("Every Cage must have exactly one target");
+        }
+        this.size = size;
+        this.targets = targets.clone();
+        this.cageCells = new int[cageCells.length][];
+        for (int i = 0; i < cageCells.length; i++) {
+            this.cageCells[i] = cageCells[i].clone();
+        }
+
+        //Precomputes the operators and target numbers, and the Cage of every Cell (-1 if it's in none)
+        this.operators = new Operator[targets.length];
+        this.targetValues = new int[targets.length];
+        this.cageOf = new int[size * size];
+        Arrays.fill(cageOf, -1);
+        for (int i = 0; i < targets.length; i++) {
+            operators[i] = Operator.fromTarget(targets[i]);
+            targetValues[i] = Operator.targetValue(targets[i]);
+            for (int cell : cageCells[i]) {
+                if (cell >= 0 && cell < cageOf.length) {
+                    cageOf[cell] = i;
+                }
+            }
+        }
+
+        //Precomputes where the Cages are drawn: the label goes in the first Cell (the lowest CellID),
+        //a border on every side where the neighbour is in another Cage or off the Board
+        this.labelCells = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            int first = Integer.MAX_VALUE;
+            for (int cell : cageCells[i]) {
+                first = Math.min(first, cell);
+            }
+            labelCells[i] = first;
+        }
+        this.cageBorders = new byte[size * size];
+        for (int cell = 0; cell < cageBorders.length; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int borders = 0;
+            if (row == 0 || cageOf[cell - size] != cageOf[cell]) {
+                borders |= BORDER_TOP;
+            }
+            if (col == size - 1 || cageOf[cell + 1] != cageOf[cell]) {
+                borders |= BORDER_RIGHT;
+            }
+            if (row == size - 1 || cageOf[cell + size] != cageOf[cell]) {
+                borders |= BORDER_BOTTOM;
+            }
+            if (col == 0 || cageOf[cell - 1] != cageOf[cell]) {
+                borders |= BORDER_LEFT;
+            }
+            cageBorders[cell] = (byte) borders;
+        }
+        this.hash = 31 * (31 * size + Arrays.hashCode(this.targets)) + Arrays.deepHashCode(this.cageCells);
+    }
+
+    /**
+     * Returns the shared instance of the given Puzzle, so equal Puzzles are only kept in memory once.
+     *
+     * @param puzzle The Puzzle
+     * @return The shared Puzzle equal to the given one
+     */
+    public static Puzzle intern(Puzzle puzzle) {
+        synchronized (INTERNED) {
+            WeakReference<Puzzle> reference = INTERNED.get(puzzle);
+            Puzzle shared = reference == null ? null : reference.get();
+            if (shared == null) {
+                INTERNED.put(puzzle, new WeakReference<>(puzzle));
+                shared = puzzle;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Creates a Puzzle from already existing Cages.
+     *
+     * @param size  The number of Cells in each row/column
+     * @param cages Cages with their targets set
+     * @return The Puzzle describing the given Cages
+     */
+    public static Puzzle fromCages(int size, List<Cage> cages) {
+        String[] targets = new String[cages.size()];
+        int[][] cageCells = new int[cages.size()][];
+        for (int i = 0; i < cages.size(); i++) {
+            Cage cage = cages.get(i);
+            targets[i] = cage.getTarget();
+            cageCells[i] = new int[cage.getSize()];
+            for (int j = 0; j < cage.getSize(); j++) {
+                cageCells[i][j] = cage.getCells().get(j).getCellID() - 1;
+            }
+        }
+        return new Puzzle(size, targets, cageCells);
+    }
+
+    /**
+     * Reads a puzzle file in the text format.
+     *
+     * @param filename The filepath to the puzzle
+     * @return The Puzzle from the file
+     * @throws IOException Exception is thrown if there is a problem with the input file
+     */
+    public static Puzzle readFile(String filename) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(filename);
+             InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, StandardCharsets.UTF_8);
+             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            return read(bufferedReader);
+        }
+    }
+
+    /**
+     * Parses a puzzle in the text format.
+     *
+     * @param text The puzzle, one Cage per line
+     * @return The parsed Puzzle
+     */
+    public static Puzzle parse(String text) {
+        try {
+            return read(new BufferedReader(new StringReader(text)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads Cages line by line, the Board size is calculated from the largest CellID.
+     *
+     * @param bufferedReader Reader of the text format
+     * @return The read Puzzle
+     * @throws IOException Exception is thrown if there is a problem with the input
+     */
+    private static Puzzle read(BufferedReader bufferedReader) throws IOException {
+        ArrayList<String> targets = new ArrayList<>();
+        ArrayList<int[]> cageCells = new ArrayList<>();
+        int largestID = 0;
+
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String[] var = line.trim().split("\\s+");
+            String[] cellIDs = var[1].split(",");
+            int[] cells = new int[cellIDs.length];
+            for (int i = 0; i < cellIDs.length; i++) {
+                int cellID = Integer.parseInt(cellIDs[i].trim());
+                largestID = Math.max(largestID, cellID);
+                cells[i] = cellID - 1;
+            }
+            targets.add(var[0]);
+            cageCells.add(cells);
+        }
+
+        int size = (int) Math.round(Math.sqrt(largestID));
+        return new Puzzle(size, targets.toArray(new String[0]), cageCells.toArray(new int[0][]));
+    }
+
+    /**
+     * Converts the Puzzle to the text format.
+     *
+     * @return The Puzzle as text, one Cage per line
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < targets.length; i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(targets[i]).append(' ');
+            for (int j = 0; j < cageCells[i].length; j++) {
+                if (j > 0) {
+                    text.append(',');
+                }
+                text.append(cageCells[i][j] + 1);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the Puzzle to a file in the text format.
+     *
+     * @param filename The filepath for the puzzle
+     * @throws IOException Exception is thrown if the file can't be written
+     */
+    public void writeFile(String filename) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8)) {
+            writer.write(toText());
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCageCount() {
+        return targets.length;
+    }
+
+    public String getTarget(int cage) {
+        return targets[cage];
+    }
+
+    /**
+     * Returns the Cells of a Cage. The array is shared and must not be changed.
+     *
+     * @param cage Index of the Cage
+     * @return Indexes of the Cells (CellID - 1)
+     */
+    public int[] getCageCells(int cage) {
+        return cageCells[cage];
+    }
+
+    public Operator getOperator(int cage) {
+        return operators[cage];
+    }
+
+    public int getTargetValue(int cage) {
+        return targetValues[cage];
+    }
+
+    /**
+     * Finds the Cage the given Cell belongs to.
+     *
+     * @param cell Index of the Cell (CellID - 1)
+     * @return Index of the Cage, or -1 if the Cell is in no Cage
+     */
+    public int getCageOf(int cell) {
+        return cageOf[cell];
+    }
+
+    /**
+     * Returns the Cell the label of a Cage is drawn in, the first Cell of the Cage on the Board.
+     *
+     * @param cage Index of the Cage
+     * @return Index of the Cell (CellID - 1)
+     */
+    public int getLabelCell(int cage) {
+        return labelCells[cage];
+    }
+
+    /**
+     * Returns the sides of a Cell that a thick Cage border is drawn on.
+     *
+     * @param cell Index of the Cell (CellID - 1)
+     * @return Bitmask of BORDER_TOP, BORDER_RIGHT, BORDER_BOTTOM and BORDER_LEFT
+     */
+    public int getCageBorders(int cell) {
+        return cageBorders[cell];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Puzzle)) {
+            return false;
+        }
+        Puzzle puzzle = (Puzzle) o;
+        return size == puzzle.size
+                && hash == puzzle.hash
+                && Arrays.equals(targets, puzzle.targets)
+                && Arrays.deepEquals(cageCells, puzzle.cageCells);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Puzzle{" +
+                "size=" + size +
+                ", cages=" + targets.length +
+                '}';
+    }
+}
@@ -0,0 +1,408 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * PuzzleArchive is a compact binary container for a large number of Puzzles.
+ * <p>
+ * Layout of the file:
+ * - header: magic number "MDKA" and the format version (4 bytes each)
+ * - puzzle records, one after another, each starting on a byte boundary
+ * - index: the offset of every record (4 bytes each), so any puzzle can be found in O(1)
+ * - trailer: the number of puzzles and the offset of the index (4 bytes each)
+ * <p>
+ * Every record is a bit stream of Elias gamma coded numbers:
+ * the Board size, the number of Cages and then for each Cage its operator (3 bits),
+ * the target number, the number of Cells and the CellIDs, where every CellID after the first one
+ * is stored as a (zigzag encoded) difference from the previous one. This keeps the original order of Cells.
+ * <p>
+ * The archive is read through a memory-mapped buffer, so it is limited to 2GB.
+ */
+public class PuzzleArchive implements Closeable {
+    private static final int MAGIC = 0x4D444B41;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+
+    private PuzzleArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Puzzle archive is too large to be mapped");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (buffer.capacity() < HEADER_SIZE + TRAILER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a puzzle archive");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported puzzle archive version: " + buffer.getInt(4));
+        }
+        this.count = buffer.getInt(buffer.capacity() - TRAILER_SIZE);
+        this.indexOffset = buffer.getInt(buffer.capacity() - TRAILER_SIZE + 4);
+    }
+
+    /**
+     * Opens an existing archive for reading.
+     *
+     * @param filename The filepath to the archive
+     * @return The opened archive
+     * @throws IOException Exception is thrown if the file is not a valid archive
+     */
+    public static PuzzleArchive open(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            return new PuzzleArchive(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles in the archive.
+     *
+     * @return The number of puzzles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes the puzzle with the given number. Safe to be called from several threads at once.
+     *
+     * @param k The number of the puzzle (from 0 to size() - 1)
+     * @return The decoded Puzzle
+     */
+    public Puzzle get(int k) {
+        if (k < 0 || k >= count) {
+            throw new IndexOutOfBoundsException("Puzzle " + k + " is not in the archive of " + count);
+        }
+        int offset = buffer.getInt(indexOffset + 4 * k);
+        return decode(new BitReader(buffer, offset));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Encodes a Puzzle into the given bit stream.
+     *
+     * @param puzzle The Puzzle to be encoded
+     * @param out    The bit stream
+     */
+    private static void encode(Puzzle puzzle, BitWriter out) {
+        out.writeGamma(puzzle.getSize());
+        out.writeGamma(puzzle.getCageCount() + 1);
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            String target = puzzle.getTarget(i);
+            out.writeBits(Operator.fromTarget(target).ordinal(), 3);
+            out.writeGamma(Operator.targetValue(target) + 1);
+
+            int[] cells = puzzle.getCageCells(i);
+            out.writeGamma(cells.length);
+            out.writeGamma(cells[0] + 1);
+            for (int j = 1; j < cells.length; j++) {
+                int delta = cells[j] - cells[j - 1];
+                out.writeGamma(((delta << 1) ^ (delta >> 31)) + 1);
+            }
+        }
+        out.alignToByte();
+    }
+
+    /**
+     * Decodes a Puzzle from the given bit stream.
+     *
+     * @param in The bit stream positioned at the start of a record
+     * @return The decoded Puzzle
+     */
+    private static Puzzle decode(BitReader in) {
+        int size = in.readGamma();
+        int cageCount = in.readGamma() - 1;
+        String[] targets = new String[cageCount];
+        int[][] cageCells = new int[cageCount][];
+        Operator[] operators = Operator.values();
+
+        for (int i = 0; i < cageCount; i++) {
+            Operator operator = operators[in.readBits(3)];
+            targets[i] = operator.toTarget(in.readGamma() - 1);
+
+            int[] cells = new int[in.readGamma()];
+            cells[0] = in.readGamma() - 1;
+            for (int j = 1; j < cells.length; j++) {
+                int zigzag = in.readGamma() - 1;
+                cells[j] = cells[j - 1] + ((zigzag >>> 1) ^ -(zigzag & 1));
+            }
+            cageCells[i] = cells;
+        }
+        return new Puzzle(size, targets, cageCells);
+    }
+
+    /**
+     * Writes an archive puzzle by puzzle, so it doesn't have to be kept in memory while being created.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final ArrayList<Integer> offsets = new ArrayList<>();
+        private final BitWriter bits = new BitWriter();
+        private int position;
+
+        public Writer(String filename) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        /**
+         * Appends a Puzzle to the archive.
+         *
+         * @param puzzle The Puzzle to be added
+         * @throws IOException Exception is thrown if the file can't be written
+         */
+        public void add(Puzzle puzzle) throws IOException {
+            bits.reset();
+            encode(puzzle, bits);
+            offsets.add(position);
+            out.write(bits.getBytes(), 0, bits.getLength());
+            position += bits.getLength();
+        }
+
+        /**
+         * Writes the index and the trailer and closes the file.
+         *
+         * @throws IOException Exception is thrown if the file can't be written
+         */
+        @Override
+        public void close() throws IOException {
+            int indexOffset = position;
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(offsets.size());
+            out.writeInt(indexOffset);
+            out.close();
+        }
+    }
+
+    /**
+     * Converts puzzle files in the text format into one archive.
+     *
+     * @param textFiles The filepaths to the puzzles
+     * @param archive   The filepath for the archive
+     * @throws IOException Exception is thrown if a file can't be read or written
+     */
+    public static void fromTextFiles(List<String> textFiles, String archive) throws IOException {
+        try (Writer writer = new Writer(archive)) {
+            for (String textFile : textFiles) {
+                writer.add(Puzzle.readFile(textFile));
+            }
+        }
+    }
+
+    /**
+     * Converts an archive back into puzzle files in the text format, named by their number in the archive.
+     *
+     * @param archive   The filepath to the archive
+     * @param directory The directory for the puzzle files
+     * @throws IOException Exception is thrown if a file can't be read or written
+     */
+    public static void toTextFiles(String archive, String directory) throws IOException {
+        Files.createDirectories(Paths.get(directory));
+        try (PuzzleArchive puzzleArchive = open(archive)) {
+            for (int k = 0; k < puzzleArchive.size(); k++) {
+                puzzleArchive.get(k).writeFile(Paths.get(directory, k + ".txt").toString());
+            }
+        }
+    }
+
+    /**
+     * Packs all puzzle files of a directory into an archive and compares
+     * the size and the load time per puzzle of both formats.
+     * <p>
+     * Usage: PuzzleArchive puzzleDirectory archiveFile
+     *
+     * @param args The puzzle directory and the filepath for the archive
+     * @throws IOException Exception is thrown if a file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        String directory = args.length > 0 ? args[0] : "src/mathdoku/resources/puzzles";
+        String archive = args.length > 1 ? args[1] : "puzzles.mdka";
+
+        List<String> textFiles = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(Paths.get(directory))) {
+            for (Path path : paths.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList())) {
+                try {
+                    Puzzle.readFile(path.toString());
+                    textFiles.add(path.toString());
+                } catch (RuntimeException e) {
+                    System.out.println("Skipping malformed puzzle " + path);
+                }
+            }
+        }
+        if (textFiles.isEmpty()) {
+            System.out.println("No puzzles found in " + directory);
+            return;
+        }
+
+        fromTextFiles(textFiles, archive);
+
+        long textBytes = 0;
+        for (String textFile : textFiles) {
+            textBytes += Files.size(Paths.get(textFile));
+        }
+        long archiveBytes = Files.size(Paths.get(archive));
+        int rounds = Math.max(1, 200_000 / textFiles.size());
+
+        //Text format: every puzzle is read and parsed from its own file
+        long textStart = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String textFile : textFiles) {
+                Puzzle.readFile(textFile);
+            }
+        }
+        double textNanos = (double) (System.nanoTime() - textStart) / rounds / textFiles.size();
+
+        //Archive: random access into the memory-mapped file
+        double archiveNanos;
+        try (PuzzleArchive puzzleArchive = open(archive)) {
+            for (int k = 0; k < puzzleArchive.size(); k++) {
+                if (!puzzleArchive.get(k).equals(normalize(Puzzle.readFile(textFiles.get(k))))) {
+                    System.out.println("Warning: " + textFiles.get(k) + " is not identical after conversion");
+                }
+            }
+            long archiveStart = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (int k = 0; k < puzzleArchive.size(); k++) {
+                    puzzleArchive.get(k);
+                }
+            }
+            archiveNanos = (double) (System.nanoTime() - archiveStart) / rounds / puzzleArchive.size();
+        }
+
+        System.out.printf("Puzzles:          %d%n", textFiles.size());
+        System.out.printf("Text format:      %d bytes (%.1f per puzzle), %.0f ns to load a puzzle%n",
+                textBytes, (double) textBytes / textFiles.size(), textNanos);
+        System.out.printf("Archive format:   %d bytes (%.1f per puzzle), %.0f ns to load a puzzle%n",
+                archiveBytes, (double) archiveBytes / textFiles.size(), archiveNanos);
+    }
+
+    /**
+     * Rewrites all targets with the standard operator symbols (for example "/" as "÷"),
+     * the same way they come out of the archive.
+     *
+     * @param puzzle The Puzzle to be normalized
+     * @return The Puzzle with standard targets
+     */
+    private static Puzzle normalize(Puzzle puzzle) {
+        String[] targets = new String[puzzle.getCageCount()];
+        int[][] cageCells = new int[puzzle.getCageCount()][];
+        for (int i = 0; i < targets.length; i++) {
+            String target = puzzle.getTarget(i);
+            targets[i] = Operator.fromTarget(target).toTarget(Operator.targetValue(target));
+            cageCells[i] = puzzle.getCageCells(i);
+        }
+        return new Puzzle(puzzle.getSize(), targets, cageCells);
+    }
+
+    /**
+     * Writes numbers bit by bit (most significant bit first) into a growing byte array.
+     */
+    private static class BitWriter {
+        private byte[] bytes = new byte[64];
+        private int bitPosition;
+
+        void writeBits(int value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                int byteIndex = bitPosition >>> 3;
+                if (byteIndex == bytes.length) {
+                    byte[] larger = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, larger, 0, bytes.length);
+                    bytes = larger;
+                }
+                if (((value >>> i) & 1) != 0) {
+                    bytes[byteIndex] |= (byte) (0x80 >>> (bitPosition & 7));
+                }
+                bitPosition++;
+            }
+        }
+
+        /**
+         * Elias gamma code: (number of bits - 1) zeros followed by the number itself.
+         *
+         * @param value A positive number to be written
+         */
+        void writeGamma(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("Only positive numbers can be gamma coded: " + value);
+            }
+            int bits = 32 - Integer.numberOfLeadingZeros(value);
+            writeBits(0, bits - 1);
+            writeBits(value, bits);
+        }
+
+        void alignToByte() {
+            bitPosition = (bitPosition + 7) & ~7;
+        }
+
+        void reset() {
+            Arrays.fill(bytes, 0, getLength(), (byte) 0);
+            bitPosition = 0;
+        }
+
+        int getLength() {
+            return (bitPosition + 7) >>> 3;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Reads numbers bit by bit from a buffer, only using absolute positions,
+     * so several readers can share one buffer.
+     */
+    private static class BitReader {
+        private final ByteBuffer buffer;
+        private long bitPosition;
+
+        BitReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.bitPosition = (long) offset << 3;
+        }
+
+        int readBits(int bits) {
+            int value = 0;
+            for (int i = 0; i < bits; i++) {
+                int b = buffer.get((int) (bitPosition >>> 3));
+                value = (value << 1) | ((b >>> (7 - (int) (bitPosition & 7))) & 1);
+                bitPosition++;
+            }
+            return value;
+        }
+
+        int readGamma() {
+            int zeros = 0;
+            while (readBits(1) == 0) {
+                zeros++;
+            }
+            return (1 << zeros) | readBits(zeros);
+        }
+    }
+}
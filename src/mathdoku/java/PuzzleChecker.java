@@ -0,0 +1,123 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * PuzzleChecker checks the formatting of a puzzle in the text format before it's loaded,
+ * without the need for a GUI (the Menu shows the messages as error alerts).
+ */
+public class PuzzleChecker {
+
+    /**
+     * Thrown when a puzzle is not correctly formatted, the message says what's wrong.
+     */
+    public static class FormatException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public FormatException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Traverses a puzzle file line by line to check the formatting.
+     *
+     * @param filename Path to the puzzle file
+     * @return The Board size of the puzzle
+     * @throws FormatException Exception is thrown if the puzzle is not correctly formatted
+     */
+    public static int checkFile(String filename) throws FormatException {
+        try (FileInputStream fileInputStream = new FileInputStream(filename);
+             InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, StandardCharsets.UTF_8);
+             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            return check(bufferedReader);
+        } catch (IOException e) {
+            throw new FormatException("There is a problem with your input, please check the formatting guide!");
+        }
+    }
+
+    /**
+     * Traverses a puzzle line by line to check the formatting.
+     *
+     * @param bufferedReader Reader of the puzzle in the text format
+     * @return The Board size of the puzzle
+     * @throws FormatException Exception is thrown if the puzzle is not correctly formatted
+     */
+    public static int check(BufferedReader bufferedReader) throws FormatException {
+        //An ArrayList to store all CellIDs in the file
+        ArrayList<Integer> allCellIDs = new ArrayList<>();
+
+        //Stores the total number of lines in the txt file
+        int numberOfLines = 0;
+
+        //Stores the largest CellID in the ArrayList
+        int largestID = 0;
+
+        try {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                //Increments a number of lines
+                numberOfLines++;
+
+                //Trimming the line from leading and trailing whitespaces
+                String trimmedLine = line.trim();
+
+                //Target is a substring until the first whitespace
+                String target = trimmedLine.substring(0, trimmedLine.indexOf(' '));
+
+                //CellIDs are everything after the first whitespace
+                String cellIDs = trimmedLine.substring(trimmedLine.indexOf(' ') + 1);
+
+                //Creating an array of CellIDs, also trimming any extra whitespaces
+                String[] cellIDsArray = cellIDs.trim().split("\\s*,\\s*");
+
+                //Checks that Cages without an arithmetic operator only have one Cell ID
+                if (target.length() == 1 && cellIDsArray.length > 1) {
+                    throw new FormatException("Cages without an arithmetic operator must only have one Cell ID");
+                }
+
+                //Adding all CellIDs from current line to an ArrayList of all CellIDs
+                for (String cellID : cellIDsArray) {
+                    allCellIDs.add(Integer.parseInt(cellID));
+                }
+            }
+        } catch (FormatException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FormatException("There is a problem with your input, please check the formatting guide!");
+        }
+
+        //Checking an array of Cell Ids for duplicates
+        if (Toolbox.findDuplicates(allCellIDs)) {
+            throw new FormatException("You can't have the same Cell being assigned to more than one Cage!");
+        }
+
+        //Finds the largest CellID in the file
+        for (int cellID : allCellIDs) {
+            if (cellID > largestID) {
+                largestID = cellID;
+            }
+        }
+
+        //The number of cells must be equal to the largest CellID
+        if (allCellIDs.size() != largestID) {
+            throw new FormatException("Some Cell IDs might be missing, please check the formatting guide!");
+        }
+
+        //Calculates the Board size for the Game
+        int boardSize = (int) Math.sqrt(largestID);
+        if (boardSize * boardSize != largestID) {
+            throw new FormatException("The largest Cell ID is not a perfect square!");
+        }
+
+        //Checks the number of lines in the file
+        if (numberOfLines == 0) {
+            throw new FormatException("You can't have an empty input!");
+        } else if (numberOfLines > 64) {
+            throw new FormatException("Too many lines, please check the formatting guide!");
+        }
+        return boardSize;
+    }
+}
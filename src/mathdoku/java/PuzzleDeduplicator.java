@@ -0,0 +1,171 @@
+package mathdoku.java;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+/**
+ * PuzzleDeduplicator remembers the CanonicalForm fingerprints of the puzzles it has seen,
+ * so puzzles that are only a rotation, reflection or relabelling of an earlier one can be dropped.
+ * <p>
+ * The exact mode keeps every fingerprint in a HashSet. The recent mode keeps only the last fingerprints added,
+ * for long running users such as the PuzzlePool. For very large generation runs the Bloom filter mode
+ * uses a fixed amount of memory instead, at the cost of sometimes taking a new puzzle for a duplicate
+ * (never the other way round).
+ */
+public class PuzzleDeduplicator {
+    private final HashSet<Long> fingerprints;
+    private final long[] bits;
+    private final int hashes;
+    private final int capacity; //0 - unbounded
+    private long seen;
+    private long duplicates;
+
+    private PuzzleDeduplicator(HashSet<Long> fingerprints, long[] bits, int hashes, int capacity) {
+        this.fingerprints = fingerprints;
+        this.bits = bits;
+        this.hashes = hashes;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a PuzzleDeduplicator that keeps every fingerprint.
+     *
+     * @return The PuzzleDeduplicator
+     */
+    public static PuzzleDeduplicator exact() {
+        return new PuzzleDeduplicator(new HashSet<>(), null, 0, 0);
+    }
+
+    /**
+     * Creates a PuzzleDeduplicator that keeps the given number of the last fingerprints added
+     * and forgets the oldest ones.
+     *
+     * @param capacity The number of fingerprints kept
+     * @return The PuzzleDeduplicator
+     */
+    public static PuzzleDeduplicator recent(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        return new PuzzleDeduplicator(new LinkedHashSet<>(), null, 0, capacity);
+    }
+
+    /**
+     * Creates a PuzzleDeduplicator backed by a Bloom filter sized for the given number of puzzles.
+     *
+     * @param expected          The number of puzzles expected
+     * @param falsePositiveRate The accepted chance of taking a new puzzle for a duplicate (for example 0.001)
+     * @return The PuzzleDeduplicator
+     */
+    public static PuzzleDeduplicator bloom(long expected, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bitCount = Math.max(64, (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        int hashes = Math.max(1, (int) Math.round((double) bitCount / expected * ln2));
+        return new PuzzleDeduplicator(null, new long[(int) ((bitCount + 63) / 64)], hashes, 0);
+    }
+
+    /**
+     * Adds a Puzzle.
+     *
+     * @param puzzle The Puzzle
+     * @return true - the Puzzle is new, false - an equivalent one has been seen already
+     */
+    public boolean add(Puzzle puzzle) {
+        return add(CanonicalForm.of(puzzle).getFingerprint());
+    }
+
+    /**
+     * Adds a fingerprint of a CanonicalForm.
+     *
+     * @param fingerprint The fingerprint
+     * @return true - the fingerprint is new, false - it has been seen already
+     */
+    public synchronized boolean add(long fingerprint) {
+        seen++;
+        boolean added;
+        if (fingerprints != null) {
+            added = fingerprints.add(fingerprint);
+            if (capacity > 0 && fingerprints.size() > capacity) {
+                Iterator<Long> oldest = fingerprints.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        } else {
+            //Double hashing: the i-th bit is h1 + i * h2, where h2 comes from remixing the fingerprint
+            long h2 = fingerprint * 0x9E3779B97F4A7C15L;
+            h2 ^= h2 >>> 32;
+            long bitCount = (long) bits.length * 64;
+            added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(fingerprint + i * h2, bitCount);
+                long mask = 1L << (bit & 63);
+                int word = (int) (bit >>> 6);
+                if ((bits[word] & mask) == 0) {
+                    bits[word] |= mask;
+                    added = true;
+                }
+            }
+        }
+        if (!added) {
+            duplicates++;
+        }
+        return added;
+    }
+
+    public synchronized long getSeen() {
+        return seen;
+    }
+
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Generates puzzles with the Generator, deduplicates them and reports the duplicate rate
+     * and how fast the canonical forms are computed.
+     * <p>
+     * Usage: PuzzleDeduplicator [count] [size] [difficulty]
+     *
+     * @param args The number of puzzles (default 20000), Board size (default 4) and difficulty (default 2)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int difficulty = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        Puzzle[] puzzles = new Puzzle[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            puzzles[i] = Puzzle.fromCages(size, new Generator(size, difficulty).getCages());
+        }
+        double generateSeconds = (System.nanoTime() - start) / 1e9;
+
+        //The first round warms up the JIT
+        long[] fingerprints = new long[count];
+        double canonicalSeconds = 0;
+        for (int round = 0; round < 3; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                fingerprints[i] = CanonicalForm.of(puzzles[i]).getFingerprint();
+            }
+            canonicalSeconds = (System.nanoTime() - start) / 1e9;
+        }
+
+        PuzzleDeduplicator exact = exact();
+        PuzzleDeduplicator bloom = bloom(count, 0.001);
+        int distinct = new HashSet<>(Arrays.asList(puzzles)).size();
+        for (long fingerprint : fingerprints) {
+            exact.add(fingerprint);
+            bloom.add(fingerprint);
+        }
+
+        System.out.printf(Locale.ROOT, "generated %d puzzles %dx%d in %.2f s (%.0f/s)%n",
+                count, size, size, generateSeconds, count / generateSeconds);
+        System.out.printf(Locale.ROOT, "canonical forms: %.0f/s%n", count / canonicalSeconds);
+        System.out.printf(Locale.ROOT, "identical puzzles: %d, equivalent puzzles (exact): %d, (Bloom filter): %d%n",
+                count - distinct, exact.getDuplicates(), bloom.getDuplicates());
+    }
+}
@@ -0,0 +1,183 @@
+package mathdoku.java;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * PuzzleId identifies a generated puzzle by the Board size, difficulty, seed and Generator version,
+ * so the puzzle can be generated again on demand instead of being stored in full.
+ * <p>
+ * Stored in binary it takes 10 bytes (see writeTo), as text it looks like "6x6-2-3hx0r9t4kq1m-v1".
+ * The daily puzzle number n is simply the puzzle with seed n, counted in days from 1 January 2020.
+ */
+public final class PuzzleId {
+    public static final LocalDate FIRST_DAILY = LocalDate.of(2020, 1, 1);
+
+    private final int size;
+    private final int difficulty;
+    private final long seed;
+    private final int version;
+
+    /**
+     * Creates a PuzzleId.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @param seed       The seed
+     * @param version    The Generator VERSION the puzzle was made with
+     */
+    public PuzzleId(int size, int difficulty, long seed, int version) {
+        if (size < 2 || size > 8 || difficulty < 1 || difficulty > 3 || version < 1 || version > 255) {
+            throw new IllegalArgumentException("Invalid puzzle id: size " + size + ", difficulty " + difficulty
+                    + ", version " + version);
+        }
+        this.size = size;
+        this.difficulty = difficulty;
+        this.seed = seed;
+        this.version = version;
+    }
+
+    /**
+     * Creates a PuzzleId with a random seed for the current Generator VERSION.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @return The PuzzleId
+     */
+    public static PuzzleId random(int size, int difficulty) {
+        return new PuzzleId(size, difficulty, new SplittableRandom().nextLong(), Generator.VERSION);
+    }
+
+    /**
+     * Returns the PuzzleId of a daily puzzle.
+     *
+     * @param number     The daily puzzle number (see dailyNumber)
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @return The PuzzleId
+     */
+    public static PuzzleId daily(long number, int size, int difficulty) {
+        return new PuzzleId(size, difficulty, number, Generator.VERSION);
+    }
+
+    /**
+     * Returns the number of the daily puzzle of a date.
+     *
+     * @param date The date
+     * @return The number of days since FIRST_DAILY
+     */
+    public static long dailyNumber(LocalDate date) {
+        return date.toEpochDay() - FIRST_DAILY.toEpochDay();
+    }
+
+    /**
+     * Generates the puzzle again, graded at its difficulty.
+     *
+     * @return The Generator holding the puzzle
+     * @throws IllegalStateException Exception is thrown if the PuzzleId was made by another Generator version
+     */
+    public Generator generate() {
+        if (version != Generator.VERSION) {
+            throw new IllegalStateException("Puzzle id " + this + " needs generator version " + version
+                    + ", this is version " + Generator.VERSION);
+        }
+        return GradedGenerator.generate(size, difficulty, difficulty, seed,
+                Runtime.getRuntime().availableProcessors()).getGenerator();
+    }
+
+    /**
+     * Writes the PuzzleId in 10 bytes: the version, the size and difficulty in one byte, and the seed.
+     *
+     * @param out Where the PuzzleId is written to
+     * @throws IOException Exception is thrown if it can't be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(version);
+        out.writeByte(size << 4 | difficulty);
+        out.writeLong(seed);
+    }
+
+    /**
+     * Reads a PuzzleId written by writeTo.
+     *
+     * @param in Where the PuzzleId is read from
+     * @return The PuzzleId
+     * @throws IOException Exception is thrown if it can't be read or is not valid
+     */
+    public static PuzzleId readFrom(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        int sizeAndDifficulty = in.readUnsignedByte();
+        long seed = in.readLong();
+        try {
+            return new PuzzleId(sizeAndDifficulty >>> 4, sizeAndDifficulty & 0xF, seed, version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the text form of a PuzzleId.
+     *
+     * @param text For example "6x6-2-3hx0r9t4kq1m-v1"
+     * @return The PuzzleId
+     * @throws IllegalArgumentException Exception is thrown if the text is not a PuzzleId
+     */
+    public static PuzzleId parse(String text) {
+        String[] parts = text.trim().toLowerCase(Locale.ROOT).split("-");
+        if (parts.length != 4 || !parts[3].startsWith("v")) {
+            throw new IllegalArgumentException("Not a puzzle id: " + text);
+        }
+        String[] dimensions = parts[0].split("x");
+        try {
+            if (dimensions.length != 2 || !dimensions[0].equals(dimensions[1])) {
+                throw new IllegalArgumentException("Not a puzzle id: " + text);
+            }
+            return new PuzzleId(Integer.parseInt(dimensions[0]), Integer.parseInt(parts[1]),
+                    Long.parseUnsignedLong(parts[2], 36), Integer.parseInt(parts[3].substring(1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a puzzle id: " + text);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PuzzleId)) {
+            return false;
+        }
+        PuzzleId other = (PuzzleId) o;
+        return size == other.size && difficulty == other.difficulty && seed == other.seed && version == other.version;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(seed) * 31 + (size << 12 | difficulty << 8 | version);
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + "-" + difficulty + "-" + Long.toUnsignedString(seed, 36) + "-v" + version;
+    }
+}
@@ -0,0 +1,150 @@
+package mathdoku.java;
+
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * PuzzlePool keeps a few generated puzzles ready for every (size, difficulty) pair that has been asked for,
+ * so starting a new Game doesn't have to wait for the Generator.
+ * Puzzles are made by the GradedGenerator, so their Grade matches the chosen difficulty.
+ * <p>
+ * Queues are refilled on a single low priority background thread, which generates the puzzles itself
+ * (one worker of the GradedGenerator), so refilling never takes more than one core while the user plays.
+ * If a queue is empty, the puzzle is generated on all cores from a normal priority background thread instead,
+ * never on the JavaFX thread.
+ * <p>
+ * Puzzles equivalent to one of the last RECENT_PUZZLES handed out (see CanonicalForm) are generated again,
+ * a few times at most, as small Boards only have a handful of different puzzles.
+ */
+public class PuzzlePool {
+    private static final int CAPACITY = 3;
+    private static final int MAX_DUPLICATE_RETRIES = 5;
+    private static final int RECENT_PUZZLES = 1024;
+    private static final int COLD_WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final PuzzlePool INSTANCE = new PuzzlePool();
+
+    private final ConcurrentHashMap<Integer, BlockingQueue<Generator>> queues = new ConcurrentHashMap<>();
+    private final Set<Integer> refilling = ConcurrentHashMap.newKeySet();
+    private final PuzzleDeduplicator seen = PuzzleDeduplicator.recent(RECENT_PUZZLES);
+    private final ExecutorService producer = Executors.newSingleThreadExecutor(
+            threadFactory("puzzle-pool", Thread.MIN_PRIORITY));
+    private final ExecutorService coldGenerator = Executors.newCachedThreadPool(
+            threadFactory("puzzle-generator", Thread.NORM_PRIORITY));
+
+    private PuzzlePool() {
+    }
+
+    public static PuzzlePool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes a ready puzzle from the pool, or starts generating one if the pool is empty.
+     * Either way the pool is refilled in the background afterwards.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @return The generated puzzle (already completed if the pool had one ready)
+     */
+    public CompletableFuture<Generator> take(int size, int difficulty) {
+        Generator ready = poll(size, difficulty);
+        if (ready != null) {
+            return CompletableFuture.completedFuture(ready);
+        }
+        return CompletableFuture.supplyAsync(() -> generate(size, difficulty, COLD_WORKERS), coldGenerator);
+    }
+
+    /**
+     * Takes a ready puzzle from the pool without waiting.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @return A generated puzzle, or null if none is ready
+     */
+    public Generator poll(int size, int difficulty) {
+        Generator ready = getQueue(size, difficulty).poll();
+        warm(size, difficulty);
+        return ready;
+    }
+
+    /**
+     * Makes sure the queue for the given size and difficulty is being filled up in the background.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     */
+    public void warm(int size, int difficulty) {
+        int key = key(size, difficulty);
+        if (getQueue(size, difficulty).remainingCapacity() > 0 && refilling.add(key)) {
+            producer.execute(() -> refill(size, difficulty));
+        }
+    }
+
+    /**
+     * Generates puzzles until the queue is full.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     */
+    private void refill(int size, int difficulty) {
+        BlockingQueue<Generator> queue = getQueue(size, difficulty);
+        try {
+            while (queue.remainingCapacity() > 0) {
+                queue.offer(generate(size, difficulty, 1));
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            refilling.remove(key(size, difficulty));
+        }
+
+        //A puzzle might have been taken after the queue was last checked
+        if (queue.remainingCapacity() > 0) {
+            warm(size, difficulty);
+        }
+    }
+
+    /**
+     * Generates a puzzle graded at the given difficulty.
+     * Difficulty 0 (a Game loaded from a file) is treated as Hard, the same as in the Generator.
+     *
+     * @param size       Size of the Square Board NxN as N (from 2 to 8)
+     * @param difficulty Difficulty level (1 to 3)
+     * @param workers    The number of threads generating it (1 - only the calling thread)
+     * @return The generated puzzle
+     */
+    private Generator generate(int size, int difficulty, int workers) {
+        int level = difficulty >= 1 && difficulty <= 3 ? difficulty : 3;
+        Generator generator = GradedGenerator.generate(size, level, level, workers).getGenerator();
+        for (int retry = 0; retry < MAX_DUPLICATE_RETRIES
+                && !seen.add(Puzzle.fromCages(size, generator.getCages())); retry++) {
+            generator = GradedGenerator.generate(size, level, level, workers).getGenerator();
+        }
+        return generator;
+    }
+
+    private BlockingQueue<Generator> getQueue(int size, int difficulty) {
+        return queues.computeIfAbsent(key(size, difficulty), key -> new ArrayBlockingQueue<>(CAPACITY));
+    }
+
+    private static int key(int size, int difficulty) {
+        return size * 10 + difficulty;
+    }
+
+    /**
+     * Creates daemon threads with the given name and priority, so they never keep the application running.
+     *
+     * @param name     Name of the threads
+     * @param priority Priority of the threads
+     * @return The thread factory
+     */
+    static ThreadFactory threadFactory(String name, int priority) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,218 @@
+package mathdoku.java;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SessionHost runs many independent headless GameSessions in one JVM, without JavaFX.
+ * <p>
+ * Sessions can be used in-process (execute) or by clients on the loopback interface (listen),
+ * one text command per line and one reply line per command:
+ * NEW cage;cage;...     - starts a session, the Puzzle in the text format with ';' between Cages -> OK id
+ * SET id cell value     - sets a value (cell = CellID - 1, value 0 clears it) -> OK NONE|ROW|COLUMN|CAGE [WON]
+ * UNDO id / REDO id     - -> OK true|false
+ * HINT id               - corrects one Cell -> OK cell value, or OK -1 if it's already solved
+ * CHECK id              - -> OK VALID|INVALID [WON]
+ * SHOW id               - -> OK value,value,...
+ * CLOSE id              - ends the session -> OK
+ * Anything wrong with a command is answered with ERR and a description.
+ * <p>
+ * Every client connection gets its own thread: a virtual thread when the JVM has them (Java 21 and newer),
+ * otherwise a pooled platform thread. Sessions of the same Puzzle share it and its solution.
+ */
+public class SessionHost implements Closeable {
+    private final ConcurrentHashMap<Integer, GameSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Puzzle, int[]> solutions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ExecutorService connections = newThreadPerTaskExecutor("session-host");
+    private ServerSocket serverSocket;
+
+    /**
+     * Creates an executor that runs every task on a new virtual thread, or on a cached pool of daemon threads
+     * if the JVM has no virtual threads.
+     *
+     * @param name Name of the threads (used by the fallback only)
+     * @return The executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts a new session.
+     *
+     * @param puzzle The Puzzle to be played
+     * @return The new session
+     * @throws IllegalArgumentException Exception is thrown if the Puzzle has no solution
+     */
+    public GameSession create(Puzzle puzzle) {
+        Puzzle shared = Puzzle.intern(puzzle);
+        int[] solution = solutions.computeIfAbsent(shared, this::solve);
+        if (solution.length == 0) {
+            throw new IllegalArgumentException("The puzzle has no solution");
+        }
+        GameSession session = new GameSession(nextId.getAndIncrement(), shared, solution);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    private int[] solve(Puzzle puzzle) {
+        int[] solution = new int[puzzle.getSize() * puzzle.getSize()];
+        return SolverEngine.fastestFor(puzzle.getSize()).create(puzzle).solve(solution) ? solution : new int[0];
+    }
+
+    /**
+     * Finds a session.
+     *
+     * @param id ID of the session
+     * @return The session
+     * @throws IllegalArgumentException Exception is thrown if there is no such session
+     */
+    public GameSession get(int id) {
+        GameSession session = sessions.get(id);
+        if (session == null) {
+            throw new IllegalArgumentException("No session " + id);
+        }
+        return session;
+    }
+
+    /**
+     * Ends a session.
+     *
+     * @param id ID of the session
+     */
+    public void remove(int id) {
+        sessions.remove(id);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Executes one command of the text protocol.
+     *
+     * @param command The command line
+     * @return The reply line
+     */
+    public String execute(String command) {
+        try {
+            String[] args = command.trim().split("\\s+", 2);
+            String name = args[0].toUpperCase();
+            if (name.equals("NEW")) {
+                return "OK " + create(Puzzle.parse(args[1].replace(';', '\n'))).getId();
+            }
+
+            String[] numbers = args.length > 1 ? args[1].split("\\s+") : new String[0];
+            GameSession session = get(Integer.parseInt(numbers[0]));
+            switch (name) {
+                case "SET": {
+                    GameSession.Conflict conflict = session.move(Integer.parseInt(numbers[1]), Integer.parseInt(numbers[2]));
+                    return "OK " + conflict + (session.isWon() ? " WON" : "");
+                }
+                case "UNDO":
+                    return "OK " + session.undo();
+                case "REDO":
+                    return "OK " + session.redo();
+                case "HINT": {
+                    int cell = session.hint();
+                    return "OK " + cell + (cell >= 0 ? " " + session.getValues()[cell] : "");
+                }
+                case "CHECK":
+                    return "OK " + (session.isValid() ? "VALID" : "INVALID") + (session.isWon() ? " WON" : "");
+                case "SHOW":
+                    return "OK " + Arrays.toString(session.getValues()).replaceAll("[\\[\\] ]", "");
+                case "CLOSE":
+                    remove(session.getId());
+                    return "OK";
+                default:
+                    return "ERR Unknown command " + name;
+            }
+        } catch (RuntimeException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * Starts accepting clients on the loopback interface, in the background.
+     *
+     * @param port The port, 0 - any free port
+     * @return The port the host listens on
+     * @throws IOException Exception is thrown if the port can't be opened
+     */
+    public int listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    connections.execute(() -> serve(socket));
+                }
+            } catch (SocketException e) {
+                //The host has been closed
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "session-host-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Answers the commands of one client until it disconnects.
+     *
+     * @param socket The client connection
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(execute(line));
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException e) {
+            //The client has disconnected
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        connections.shutdownNow();
+    }
+
+    /**
+     * Runs a host on the given port (default 7777) until the process is stopped.
+     *
+     * @param args The port, optional
+     * @throws Exception Exception is thrown if the port can't be opened
+     */
+    public static void main(String[] args) throws Exception {
+        SessionHost host = new SessionHost();
+        int port = host.listen(args.length > 0 ? Integer.parseInt(args[0]) : 7777);
+        System.out.println("MathDoku session host on 127.0.0.1:" + port);
+        Thread.currentThread().join();
+    }
+}
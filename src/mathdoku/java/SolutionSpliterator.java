@@ -0,0 +1,316 @@
+package mathdoku.java;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * SolutionSpliterator enumerates the solutions of a Puzzle lazily, one at a time, so a caller can
+ * take the first one, count up to a limit or go through all of them without collecting them first.
+ * <p>
+ * The search is the same backtracking as in Solver, but with an explicit stack instead of recursion,
+ * so it can stop after every solution and carry on later. Row and column rules are kept as bitmasks of
+ * used values. Partly filled Cages are cut off early: small + and x Cages by Operator.canReach, Cages of
+ * Solver.LARGE_CAGE Cells or more of any operator by the CageOracle. Memory only grows with the number of
+ * empty Cells: the stack keeps the values still to be tried for every empty Cell.
+ * <p>
+ * trySplit hands half of the untried values of the shallowest Cell that has any over to a new
+ * SolutionSpliterator with the values above it, so parallel streams enumerate disjoint parts of the search.
+ * Solutions are not reported in any particular order once the spliterator has been split.
+ */
+public class SolutionSpliterator implements Spliterator<int[]> {
+    private final Puzzle puzzle;
+    private final int size;
+    private final int[] grid;
+    private final int[] empty;
+    private final int[] remaining;
+    private final int[] rowUsed;
+    private final int[] colUsed;
+    private final int[] cageValues;
+    private final int[] cageMasks;
+    private final CageOracle oracle;
+    private final int base;
+    private int top;
+
+    /**
+     * Creates a SolutionSpliterator over the solutions that agree with the given values.
+     *
+     * @param puzzle The Puzzle
+     * @param grid   Values of all Cells (index = CellID - 1, 0 - empty Cell), left as they are
+     */
+    public SolutionSpliterator(Puzzle puzzle, int[] grid) {
+        this(puzzle, grid.clone(), emptyCells(grid), 0, -1);
+    }
+
+    /**
+     * Creates a SolutionSpliterator that starts at the given depth.
+     *
+     * @param puzzle    The Puzzle
+     * @param grid      Values of all Cells, owned by the new SolutionSpliterator
+     * @param empty     Indexes of the Cells that were empty at the start
+     * @param base      The first depth (index into empty) this SolutionSpliterator searches
+     * @param candidates The values to be tried at the base depth, or -1 for all allowed values
+     */
+    private SolutionSpliterator(Puzzle puzzle, int[] grid, int[] empty, int base, int candidates) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+        this.grid = grid;
+        this.empty = empty;
+        this.remaining = new int[empty.length];
+        this.rowUsed = new int[size];
+        this.colUsed = new int[size];
+        this.base = base;
+        this.top = base;
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.cageValues = new int[largestCage];
+        this.cageMasks = new int[largestCage];
+        this.oracle = new CageOracle(puzzle);
+
+        //Values on the Board that break a rule leave nothing to search
+        boolean consistent = grid.length == size * size;
+        for (int cell = 0; consistent && cell < grid.length; cell++) {
+            int value = grid[cell];
+            if (value == 0) {
+                continue;
+            }
+            int bit = 1 << value;
+            if (value < 0 || value > size || ((rowUsed[cell / size] | colUsed[cell % size]) & bit) != 0) {
+                consistent = false;
+            } else {
+                rowUsed[cell / size] |= bit;
+                colUsed[cell % size] |= bit;
+                consistent = isCageValid(cell);
+            }
+        }
+        if (!consistent) {
+            top = base - 1;
+        } else if (base < empty.length) {
+            remaining[base] = candidates < 0 ? allowed(empty[base]) : candidates;
+        }
+    }
+
+    /**
+     * Streams the solutions that agree with the given values.
+     *
+     * @param puzzle   The Puzzle
+     * @param grid     Values of all Cells (index = CellID - 1, 0 - empty Cell), left as they are
+     * @param parallel true - the search is split over all cores, false - the solutions come one by one
+     * @return The solutions, every one as a new array of the values of all Cells
+     */
+    public static Stream<int[]> stream(Puzzle puzzle, int[] grid, boolean parallel) {
+        return StreamSupport.stream(new SolutionSpliterator(puzzle, grid), parallel);
+    }
+
+    /**
+     * Streams all solutions of a Puzzle, one by one.
+     *
+     * @param puzzle The Puzzle
+     * @return The solutions, every one as a new array of the values of all Cells
+     */
+    public static Stream<int[]> stream(Puzzle puzzle) {
+        return stream(puzzle, new int[puzzle.getSize() * puzzle.getSize()], false);
+    }
+
+    /**
+     * Iterates over the solutions that agree with the given values.
+     *
+     * @param puzzle The Puzzle
+     * @param grid   Values of all Cells (index = CellID - 1, 0 - empty Cell), left as they are
+     * @return The solutions, every one as a new array of the values of all Cells
+     */
+    public static Iterator<int[]> iterator(Puzzle puzzle, int[] grid) {
+        return Spliterators.iterator(new SolutionSpliterator(puzzle, grid));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        while (top >= base) {
+            if (top == empty.length) {
+                //A full Board, the value of the last Cell is taken back on the next call
+                top--;
+                action.accept(grid.clone());
+                return true;
+            }
+
+            int cell = empty[top];
+            if (grid[cell] != 0) {
+                unset(cell);
+            }
+            if (remaining[top] == 0) {
+                top--;
+                continue;
+            }
+
+            int bit = Integer.lowestOneBit(remaining[top]);
+            remaining[top] &= ~bit;
+            set(cell, Integer.numberOfTrailingZeros(bit));
+            if (isCageValid(cell)) {
+                top++;
+                if (top < empty.length) {
+                    remaining[top] = allowed(empty[top]);
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<int[]> trySplit() {
+        int last = Math.min(top, empty.length - 1);
+        for (int depth = base; depth <= last; depth++) {
+            //A Cell without a value yet keeps at least one of its values
+            int wanted = grid[empty[depth]] == 0 ? 2 : 1;
+            if (Integer.bitCount(remaining[depth]) < wanted) {
+                continue;
+            }
+
+            int given = half(remaining[depth]);
+            remaining[depth] &= ~given;
+            int[] prefix = grid.clone();
+            for (int i = depth; i < empty.length; i++) {
+                prefix[empty[i]] = 0;
+            }
+            return new SolutionSpliterator(puzzle, prefix, empty, depth, given);
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | IMMUTABLE;
+    }
+
+    private void set(int cell, int value) {
+        int bit = 1 << value;
+        grid[cell] = value;
+        rowUsed[cell / size] |= bit;
+        colUsed[cell % size] |= bit;
+    }
+
+    private void unset(int cell) {
+        int bit = 1 << grid[cell];
+        grid[cell] = 0;
+        rowUsed[cell / size] &= ~bit;
+        colUsed[cell % size] &= ~bit;
+    }
+
+    /**
+     * Returns the values not used yet in the row and the column of a Cell.
+     *
+     * @param cell Index of the Cell
+     * @return Bitmask of the values (bit v set - value v allowed)
+     */
+    private int allowed(int cell) {
+        int all = ((1 << size) - 1) << 1;
+        return all & ~(rowUsed[cell / size] | colUsed[cell % size]);
+    }
+
+    /**
+     * Checks the Cage of a Cell: a full Cage must reach its target and a partly filled one must still be able to.
+     *
+     * @param cell Index of the Cell
+     * @return true - no rule is broken, false - otherwise
+     */
+    private boolean isCageValid(int cell) {
+        int cage = puzzle.getCageOf(cell);
+        if (cage < 0) {
+            return true;
+        }
+        int[] cells = puzzle.getCageCells(cage);
+        int filled = 0;
+        for (int cageCell : cells) {
+            if (grid[cageCell] != 0) {
+                cageValues[filled++] = grid[cageCell];
+            }
+        }
+        Operator operator = puzzle.getOperator(cage);
+        int target = puzzle.getTargetValue(cage);
+        if (filled == cells.length) {
+            return operator.matches(target, cageValues, filled);
+        }
+        if (cells.length >= Solver.LARGE_CAGE) {
+            for (int i = 0; i < cells.length; i++) {
+                cageMasks[i] = grid[cells[i]] != 0 ? 1 << grid[cells[i]] : allowed(cells[i]);
+            }
+            return oracle.isFeasible(cage, cageMasks);
+        }
+        return operator.canReach(target, cageValues, filled, cells.length, size);
+    }
+
+    /**
+     * Takes every other set bit of a bitmask, starting with the highest one.
+     *
+     * @param mask The bitmask
+     * @return About half of the bits
+     */
+    private static int half(int mask) {
+        int half = 0;
+        boolean take = true;
+        for (int bits = mask; bits != 0; bits &= ~Integer.highestOneBit(bits)) {
+            if (take) {
+                half |= Integer.highestOneBit(bits);
+            }
+            take = !take;
+        }
+        return half;
+    }
+
+    private static int[] emptyCells(int[] grid) {
+        int count = 0;
+        for (int value : grid) {
+            if (value == 0) {
+                count++;
+            }
+        }
+        int[] empty = new int[count];
+        count = 0;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] == 0) {
+                empty[count++] = cell;
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Counts all solutions of the given puzzle files, one by one and in parallel,
+     * and prints the time taken by both.
+     * <p>
+     * Usage: SolutionSpliterator puzzleFile...
+     *
+     * @param args Puzzle files
+     * @throws IOException Exception is thrown if there is a problem with a puzzle file
+     */
+    public static void main(String[] args) throws IOException {
+        System.out.println("file,solutions,sequentialMs,parallelSolutions,parallelMs");
+        for (String file : args) {
+            Puzzle puzzle = Puzzle.readFile(file);
+            int[] grid = new int[puzzle.getSize() * puzzle.getSize()];
+
+            long start = System.nanoTime();
+            long sequential = stream(puzzle, grid, false).count();
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long parallel = stream(puzzle, grid, true).count();
+            long parallelNanos = System.nanoTime() - start;
+
+            System.out.printf(Locale.ROOT, "%s,%d,%.1f,%d,%.1f%n", file, sequential, sequentialNanos / 1e6,
+                    parallel, parallelNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package mathdoku.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * SolutionVerifier checks completed Boards against their Puzzles, for example to score tournament submissions.
+ * <p>
+ * A verification doesn't allocate anything: rows and columns are checked with a bitmask of the values seen,
+ * and Cages are checked straight on the Board. The result is packed into an int:
+ * the broken Constraint in the upper 16 bits and the index of the row/column/Cage/Cell in the lower 16 bits
+ * (0 - the Board is a valid solution). Batches are verified in parallel on all cores.
+ */
+public class SolutionVerifier {
+    public static final int VALID = 0;
+
+    /**
+     * The rules a Board can break, in the order they are checked.
+     */
+    public enum Constraint {
+        NONE, VALUE, ROW, COLUMN, CAGE
+    }
+
+    /**
+     * A Board submitted as the solution of a Puzzle.
+     */
+    public static class Submission {
+        private final Puzzle puzzle;
+        private final int[] grid;
+
+        /**
+         * Creates a Submission.
+         *
+         * @param puzzle The Puzzle
+         * @param grid   Values of all Cells (index = CellID - 1)
+         */
+        public Submission(Puzzle puzzle, int[] grid) {
+            this.puzzle = puzzle;
+            this.grid = grid;
+        }
+
+        public Puzzle getPuzzle() {
+            return puzzle;
+        }
+
+        public int[] getGrid() {
+            return grid;
+        }
+    }
+
+    /**
+     * Verifies a Board.
+     *
+     * @param puzzle The Puzzle
+     * @param grid   Values of all Cells (index = CellID - 1)
+     * @return VALID, or the broken Constraint and its index (see constraintOf and indexOf)
+     */
+    public static int verify(Puzzle puzzle, int[] grid) {
+        int size = puzzle.getSize();
+        if (grid.length != size * size) {
+            return failure(Constraint.VALUE, grid.length);
+        }
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] < 1 || grid[cell] > size) {
+                return failure(Constraint.VALUE, cell);
+            }
+        }
+
+        for (int row = 0; row < size; row++) {
+            int seen = 0;
+            for (int cell = row * size; cell < row * size + size; cell++) {
+                int bit = 1 << grid[cell];
+                if ((seen & bit) != 0) {
+                    return failure(Constraint.ROW, row);
+                }
+                seen |= bit;
+            }
+        }
+
+        for (int col = 0; col < size; col++) {
+            int seen = 0;
+            for (int cell = col; cell < grid.length; cell += size) {
+                int bit = 1 << grid[cell];
+                if ((seen & bit) != 0) {
+                    return failure(Constraint.COLUMN, col);
+                }
+                seen |= bit;
+            }
+        }
+
+        for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+            if (!puzzle.getOperator(cage).matchesCells(puzzle.getTargetValue(cage), grid, puzzle.getCageCells(cage))) {
+                return failure(Constraint.CAGE, cage);
+            }
+        }
+        return VALID;
+    }
+
+    /**
+     * Verifies a batch of Boards in parallel.
+     *
+     * @param submissions The Boards with their Puzzles
+     * @return The result of every Submission, in the same order
+     */
+    public static int[] verifyAll(Submission[] submissions) {
+        int[] results = new int[submissions.length];
+        IntStream.range(0, submissions.length).parallel()
+                .forEach(i -> results[i] = verify(submissions[i].getPuzzle(), submissions[i].getGrid()));
+        return results;
+    }
+
+    /**
+     * Verifies a stream of Boards in parallel, handing every result over as soon as it's known (in any order).
+     *
+     * @param submissions The Boards with their Puzzles
+     * @param results     Receives every Submission with its result, from several threads at once
+     */
+    public static void verifyAll(Stream<Submission> submissions, ObjIntConsumer<Submission> results) {
+        submissions.parallel().forEach(submission ->
+                results.accept(submission, verify(submission.getPuzzle(), submission.getGrid())));
+    }
+
+    private static int failure(Constraint constraint, int index) {
+        return constraint.ordinal() << 16 | index;
+    }
+
+    public static Constraint constraintOf(int result) {
+        return Constraint.values()[result >>> 16];
+    }
+
+    public static int indexOf(int result) {
+        return result & 0xFFFF;
+    }
+
+    /**
+     * Describes a result for people.
+     *
+     * @param result The result of verify
+     * @return For example "Valid" or "Cage 3 doesn't reach its target"
+     */
+    public static String describe(int result) {
+        int index = indexOf(result);
+        switch (constraintOf(result)) {
+            case VALUE:
+                return "Cell " + (index + 1) + " has no valid value";
+            case ROW:
+                return "Row " + (index + 1) + " repeats a value";
+            case COLUMN:
+                return "Column " + (index + 1) + " repeats a value";
+            case CAGE:
+                return "Cage " + (index + 1) + " doesn't reach its target";
+            default:
+                return "Valid";
+        }
+    }
+
+    /**
+     * Measures the throughput: solves the puzzles of the given directories, makes a batch of their solutions
+     * with every fourth one broken, and verifies it several times.
+     * <p>
+     * Usage: SolutionVerifier [batchSize] [puzzleDir...]
+     *
+     * @param args The batch size (default 1000000) and puzzle directories (default: all bundled puzzles)
+     * @throws IOException Exception is thrown if there is a problem with a puzzle file
+     */
+    public static void main(String[] args) throws IOException {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ArrayList<Submission> solved = new ArrayList<>();
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                addSolutions(new File(args[i]), solved);
+            }
+        } else {
+            addSolutions(new File("src/mathdoku/resources/puzzles"), solved);
+        }
+        if (solved.isEmpty()) {
+            System.out.println("No solvable puzzles found");
+            return;
+        }
+
+        Submission[] batch = new Submission[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            Submission submission = solved.get(i % solved.size());
+            int[] grid = submission.getGrid().clone();
+            if (i % 4 == 3) {
+                grid[i % grid.length] = grid[i % grid.length] % submission.getPuzzle().getSize() + 1;
+            }
+            batch[i] = new Submission(submission.getPuzzle(), grid);
+        }
+
+        int[] counts = new int[Constraint.values().length];
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int[] results = verifyAll(batch);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "round %d: %.1f million verifications/s%n", round + 1,
+                    batchSize / (elapsed / 1e3));
+            if (round == 0) {
+                for (int result : results) {
+                    counts[constraintOf(result).ordinal()]++;
+                }
+            }
+        }
+        for (Constraint constraint : Constraint.values()) {
+            System.out.println(constraint + ": " + counts[constraint.ordinal()]);
+        }
+    }
+
+    private static void addSolutions(File file, ArrayList<Submission> solved) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    addSolutions(child, solved);
+                }
+            }
+        } else if (file.getName().endsWith(".txt")) {
+            Puzzle puzzle = Puzzle.readFile(file.getPath());
+            int[] grid = new int[puzzle.getSize() * puzzle.getSize()];
+            if (SolverEngine.fastestFor(puzzle.getSize()).create(puzzle).solve(grid)) {
+                solved.add(new Submission(puzzle, grid));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package mathdoku.java;
+
+import java.time.Duration;
+
+/**
+ * SolveBudget limits how long a SolverBackend may search: by wall time, by the number of nodes
+ * (values tried in Cells, as well as Cage fillings enumerated to build the DLX matrix), or both.
+ * A run that goes over its budget stops and returns a SolveResult with BUDGET_EXCEEDED
+ * and the metrics gathered so far, instead of searching on forever.
+ * <p>
+ * Budgets with only a node limit always stop at the same point of the search, so results that depend on them
+ * (such as the uniqueness checks of the GradedGenerator) stay reproducible for the same seed.
+ */
+public final class SolveBudget {
+    public static final SolveBudget UNLIMITED = new SolveBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    //The clock is only read every this many nodes, as it costs more than a node of the DLX search
+    static final int CLOCK_INTERVAL = 256;
+
+    private final long maxNanos;
+    private final long maxNodes;
+
+    private SolveBudget(long maxNanos, long maxNodes) {
+        if (maxNanos <= 0 || maxNodes <= 0) {
+            throw new IllegalArgumentException("A solve budget must be positive");
+        }
+        this.maxNanos = maxNanos;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Creates a SolveBudget limited by wall time and the number of nodes.
+     *
+     * @param time     The longest a run may take
+     * @param maxNodes The largest number of nodes a run may try
+     * @return The SolveBudget
+     */
+    public static SolveBudget of(Duration time, long maxNodes) {
+        return new SolveBudget(time.toNanos(), maxNodes);
+    }
+
+    /**
+     * Creates a SolveBudget limited by wall time only.
+     *
+     * @param time The longest a run may take
+     * @return The SolveBudget
+     */
+    public static SolveBudget ofTime(Duration time) {
+        return new SolveBudget(time.toNanos(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a SolveBudget limited by the number of nodes only.
+     *
+     * @param maxNodes The largest number of nodes a run may try
+     * @return The SolveBudget
+     */
+    public static SolveBudget ofNodes(long maxNodes) {
+        return new SolveBudget(Long.MAX_VALUE, maxNodes);
+    }
+
+    /**
+     * Returns the time on the System.nanoTime clock when a run started at the given time has to stop.
+     *
+     * @param start The start of the run
+     * @return The deadline (Long.MAX_VALUE if there is no time limit)
+     */
+    long deadline(long start) {
+        return maxNanos == Long.MAX_VALUE || start + maxNanos < start ? Long.MAX_VALUE : start + maxNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveBudget{"
+                + (maxNanos == Long.MAX_VALUE ? "no time limit" : maxNanos / 1_000_000 + " ms")
+                + ", " + (maxNodes == Long.MAX_VALUE ? "no node limit" : maxNodes + " nodes") + "}";
+    }
+
+    /**
+     * Thrown from SolverMetrics.node when a run goes over its budget, unwinding the search
+     * up to the SolverBackend, which turns it into a SolveResult. It's never seen outside of the solvers.
+     */
+    static final class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExceededException() {
+            super("Solve budget exceeded", null, false, false);
+        }
+    }
+}
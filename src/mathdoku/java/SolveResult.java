@@ -0,0 +1,112 @@
+package mathdoku.java;
+
+/**
+ * SolveResult is the outcome of a SolverBackend run: whether it found solutions, proved there are none,
+ * or stopped because it went over its SolveBudget, together with the metrics of the run.
+ */
+public final class SolveResult {
+
+    /**
+     * How a run ended.
+     */
+    public enum Status {
+        SOLVED, UNSOLVABLE, BUDGET_EXCEEDED
+    }
+
+    private final Status status;
+    private final int solutions;
+    private final SolverMetrics metrics;
+
+    /**
+     * Creates a SolveResult.
+     *
+     * @param status    How the run ended
+     * @param solutions The number of solutions found (before the budget ran out, for BUDGET_EXCEEDED)
+     * @param metrics   The metrics of the run
+     */
+    public SolveResult(Status status, int solutions, SolverMetrics metrics) {
+        this.status = status;
+        this.solutions = solutions;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Creates the SolveResult of a run that was not stopped by its budget.
+     *
+     * @param solutions The number of solutions found
+     * @param metrics   The metrics of the run
+     * @return SOLVED if any solution was found, UNSOLVABLE otherwise
+     */
+    static SolveResult finished(int solutions, SolverMetrics metrics) {
+        return new SolveResult(solutions > 0 ? Status.SOLVED : Status.UNSOLVABLE, solutions, metrics);
+    }
+
+    /**
+     * Creates the SolveResult of a run stopped by its budget.
+     *
+     * @param metrics The metrics of the run so far
+     * @return The SolveResult
+     */
+    static SolveResult exceeded(SolverMetrics metrics) {
+        return new SolveResult(Status.BUDGET_EXCEEDED, (int) Math.min(Integer.MAX_VALUE, metrics.getSolutions()),
+                metrics);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    public boolean isBudgetExceeded() {
+        return status == Status.BUDGET_EXCEEDED;
+    }
+
+    /**
+     * Returns the number of solutions found, at most the limit of the count.
+     * If the budget was exceeded, there might be more than this.
+     *
+     * @return The number of solutions found
+     */
+    public int getSolutions() {
+        return solutions;
+    }
+
+    /**
+     * Checks whether the run proved that there is exactly one solution.
+     * Only meaningful for counts with a limit of at least 2.
+     *
+     * @return true - exactly one solution, false - none, several or not known within the budget
+     */
+    public boolean isUnique() {
+        return status == Status.SOLVED && solutions == 1;
+    }
+
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Describes the result for people.
+     *
+     * @return For example "The solver gave up after 2000 ms (5000000 values tried)"
+     */
+    public String describe() {
+        switch (status) {
+            case SOLVED:
+                return solutions == 1 ? "Solved" : "Found " + solutions + " solutions";
+            case UNSOLVABLE:
+                return "There is no solution that agrees with the given values";
+            default:
+                return String.format("The solver gave up after %d ms (%d values tried)",
+                        Math.round(metrics.getWallTimeMillis()), metrics.getNodes());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SolveResult{" + status + ", solutions=" + solutions + ", nodes=" + metrics.getNodes() + "}";
+    }
+}
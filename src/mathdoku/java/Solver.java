@@ -0,0 +1,426 @@
+package mathdoku.java;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Solver solves a Puzzle using a backtracking algorithm, without the need for a Board.
+ * <p>
+ * The values of the Board are given as an array of NxN integers (index = CellID - 1, 0 - empty Cell).
+ * Cells are filled in one after another, and every value is only checked against the row, the column
+ * and the Cage of its Cell, as the rest of the Board has already been checked.
+ * <p>
+ * A partly filled Cage of LARGE_CAGE Cells or more is checked by the CageOracle against the values still
+ * allowed in the rows and columns of its empty Cells, so a Cage that can't reach its target anymore is cut off
+ * as soon as that happens instead of once it's full.
+ * <p>
+ * Every run is recorded in SolverMetrics and as a JFR event.
+ * <p>
+ * Counting can use a TranspositionTable. As the Cells are filled in a fixed order, the rest of the search only
+ * depends on the next empty Cell, the values used in its row and in every column, and the partly filled Cages
+ * (only their sum for + and their product for x). Different values before that point can leave the same state,
+ * and its number of solutions is then taken from the table instead of being searched again.
+ * States are only looked up at the start of every row, where most of them meet again, so the hashing
+ * doesn't cost more than the nodes it saves.
+ */
+public class Solver implements SolverBackend {
+    //Cages with fewer Cells are only checked once they are full
+    static final int LARGE_CAGE = 3;
+    //Starts the check of a state apart from its key
+    private static final long CHECK_SEED = 0x9E3779B97F4A7C15L;
+
+    private final Puzzle puzzle;
+    private final int size;
+    private final int[] cageValues;
+    private final CageOracle oracle;
+    private final int[] cageMasks;
+    //Values used in every row and column, for the candidates of the empty Cells of a Cage
+    private final int[] rowUsed;
+    private final int[] colUsed;
+    //Cages with Cells both before and from the given Cell onwards, for the keys of the TranspositionTable
+    private final int[][] openCages;
+    //The key and the check of the last state hashed
+    private final long[] stateHashes = new long[2];
+    private SolverMetrics metrics;
+    private TranspositionTable table;
+
+    public Solver(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.size = puzzle.getSize();
+        this.metrics = new SolverMetrics(puzzle);
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.cageValues = new int[largestCage];
+        this.oracle = new CageOracle(puzzle);
+        this.cageMasks = new int[largestCage];
+        this.rowUsed = new int[size];
+        this.colUsed = new int[size];
+
+        this.openCages = new int[size * size][];
+        for (int cell = 0; cell < openCages.length; cell++) {
+            int count = 0;
+            int[] open = new int[puzzle.getCageCount()];
+            for (int cage = 0; cage < puzzle.getCageCount(); cage++) {
+                boolean before = false;
+                boolean after = false;
+                for (int cageCell : puzzle.getCageCells(cage)) {
+                    before |= cageCell < cell;
+                    after |= cageCell >= cell;
+                }
+                if (before && after) {
+                    open[count++] = cage;
+                }
+            }
+            openCages[cell] = Arrays.copyOf(open, count);
+        }
+    }
+
+    /**
+     * Creates a Solver that counts solutions with a TranspositionTable.
+     * Solvers are created without one by default (SolverEngine, the generators), as on the puzzles of the game
+     * the table saves few nodes, it's for benchmarks and searches with many repeated states.
+     *
+     * @param puzzle The Puzzle to be solved
+     * @param table  The TranspositionTable, cleared at the start of every count
+     */
+    public Solver(Puzzle puzzle, TranspositionTable table) {
+        this(puzzle);
+        this.table = table;
+    }
+
+    @Override
+    public SolveResult solve(int[] grid, SolveBudget budget) {
+        metrics = new SolverMetrics(puzzle);
+        SolverEvent event = new SolverEvent();
+        event.begin();
+        long start = System.nanoTime();
+        metrics.limit(budget, start);
+
+        //Works on a copy, so a run stopped by the budget doesn't leave half of the Cells filled in
+        int[] copy = grid.clone();
+        SolveResult result;
+        try {
+            boolean solved = isConsistent(copy) && solve(copy, 0, 0);
+            metrics.finish(solved, System.nanoTime() - start);
+            if (solved) {
+                System.arraycopy(copy, 0, grid, 0, grid.length);
+            }
+            result = SolveResult.finished(solved ? 1 : 0, metrics);
+        } catch (SolveBudget.ExceededException e) {
+            metrics.finishExceeded(System.nanoTime() - start);
+            result = SolveResult.exceeded(metrics);
+        }
+        event.finish(SolverEngine.BACKTRACKING.name(), puzzle, metrics);
+        return result;
+    }
+
+    /**
+     * Fills the first empty Cell from the given one onwards and recursively continues with the next ones.
+     *
+     * @param grid  Values of all Cells
+     * @param from  Index of the Cell to start looking for an empty Cell from
+     * @param depth The number of Cells filled in by the Solver so far
+     * @return true - solved, false - otherwise
+     */
+    private boolean solve(int[] grid, int from, int depth) {
+        for (int cell = from; cell < grid.length; cell++) {
+            if (grid[cell] == 0) {
+                for (int value = 1; value <= size; value++) {
+                    grid[cell] = value;
+                    metrics.node(depth + 1);
+                    if (isValid(grid, cell)) {
+                        use(cell, value);
+                        if (solve(grid, cell + 1, depth + 1)) {
+                            return true;
+                        }
+                        unuse(cell, value);
+                    }
+                    grid[cell] = 0;
+                    metrics.backtrack();
+                }
+                return false;
+            }
+        }
+        metrics.solution();
+        return true;
+    }
+
+    @Override
+    public SolveResult countSolutions(int[] grid, int limit, SolveBudget budget) {
+        metrics = new SolverMetrics(puzzle);
+        SolverEvent event = new SolverEvent();
+        event.begin();
+        long start = System.nanoTime();
+        metrics.limit(budget, start);
+        int[] copy = grid.clone();
+        if (table != null) {
+            table.clear();
+        }
+
+        SolveResult result;
+        try {
+            int found = isConsistent(copy) ? count(copy, 0, 0, limit) : 0;
+            metrics.finish(found > 0, System.nanoTime() - start);
+            result = SolveResult.finished(found, metrics);
+        } catch (SolveBudget.ExceededException e) {
+            metrics.finishExceeded(System.nanoTime() - start);
+            result = SolveResult.exceeded(metrics);
+        }
+        event.finish(SolverEngine.BACKTRACKING.name(), puzzle, metrics);
+        return result;
+    }
+
+    /**
+     * Counts the solutions from the first empty Cell onwards, in the same order as solve.
+     *
+     * @param grid  Values of all Cells
+     * @param from  Index of the Cell to start looking for an empty Cell from
+     * @param depth The number of Cells filled in by the Solver so far
+     * @param limit The number of solutions still wanted
+     * @return The number of solutions found (at most limit)
+     */
+    private int count(int[] grid, int from, int depth, int limit) {
+        for (int cell = from; cell < grid.length; cell++) {
+            if (grid[cell] == 0) {
+                long key = 0;
+                long check = 0;
+                boolean memo = table != null && cell % size == 0;
+                if (memo) {
+                    hashState(grid, cell);
+                    key = stateHashes[0];
+                    check = stateHashes[1];
+                    int known = table.get(key, check, limit);
+                    if (known >= 0) {
+                        return known;
+                    }
+                }
+
+                int found = 0;
+                for (int value = 1; value <= size && found < limit; value++) {
+                    grid[cell] = value;
+                    metrics.node(depth + 1);
+                    if (isValid(grid, cell)) {
+                        use(cell, value);
+                        found += count(grid, cell + 1, depth + 1, limit - found);
+                        unuse(cell, value);
+                    }
+                    grid[cell] = 0;
+                    metrics.backtrack();
+                }
+                if (memo) {
+                    table.put(key, check, found, found < limit);
+                }
+                return found;
+            }
+        }
+        metrics.solution();
+        return 1;
+    }
+
+    /**
+     * Hashes everything the rest of the search depends on, once all Cells before the given one are filled:
+     * the Cell, the values used in its row and in every column, and the values of the partly filled Cages.
+     * Two independent hashes are put into stateHashes, the key and the check of the state in the TranspositionTable.
+     *
+     * @param grid Values of all Cells
+     * @param cell Index of the next empty Cell
+     */
+    private void hashState(int[] grid, int cell) {
+        int row = cell / size;
+        int rowUsed = 0;
+        for (int i = row * size; i < row * size + size; i++) {
+            rowUsed |= 1 << grid[i];
+        }
+        long key = mix(cell * 0x1_0000_0000L + rowUsed);
+        long check = remix(cell * 0x1_0000_0000L + rowUsed + CHECK_SEED);
+        for (int col = 0; col < size; col++) {
+            int colUsed = 0;
+            for (int i = col; i < grid.length; i += size) {
+                colUsed |= 1 << grid[i];
+            }
+            key = mix(key ^ colUsed);
+            check = remix(check + colUsed);
+        }
+
+        for (int cage : openCages[cell]) {
+            Operator operator = puzzle.getOperator(cage);
+            long partial = operator == Operator.MULTIPLY ? 1 : 0;
+            for (int cageCell : puzzle.getCageCells(cage)) {
+                if (cageCell >= cell) {
+                    continue;
+                }
+                if (operator == Operator.ADD) {
+                    partial += grid[cageCell];
+                } else if (operator == Operator.MULTIPLY) {
+                    partial *= grid[cageCell];
+                } else {
+                    partial = partial * (size + 1) + grid[cageCell];
+                }
+            }
+            key = mix(key ^ (partial << 8 | cage));
+            check = remix(check + (partial << 8 | cage));
+        }
+        stateHashes[0] = key;
+        stateHashes[1] = check;
+    }
+
+    /**
+     * Mixes the bits of a hash (the finalizer of SplitMix64).
+     *
+     * @param x The hash
+     * @return The mixed hash
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Mixes the bits of a hash differently from mix (the finalizer of MurmurHash3), for the check of a state.
+     *
+     * @param x The hash
+     * @return The mixed hash
+     */
+    private static long remix(long x) {
+        x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+        x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Checks the value of the given Cell against its row, its column and (if it's full) its Cage.
+     *
+     * @param grid Values of all Cells
+     * @param cell Index of the Cell
+     * @return true - no rule is broken, false - otherwise
+     */
+    private boolean isValid(int[] grid, int cell) {
+        int value = grid[cell];
+        int row = cell / size;
+        int col = cell % size;
+
+        metrics.propagation();
+        for (int i = row * size; i < row * size + size; i++) {
+            if (i != cell && grid[i] == value) {
+                return false;
+            }
+        }
+
+        metrics.propagation();
+        for (int i = col; i < grid.length; i += size) {
+            if (i != cell && grid[i] == value) {
+                return false;
+            }
+        }
+
+        int cage = puzzle.getCageOf(cell);
+        if (cage < 0) {
+            return true;
+        }
+        int[] cells = puzzle.getCageCells(cage);
+        for (int i = 0; i < cells.length; i++) {
+            if (grid[cells[i]] == 0) {
+                return cells.length < LARGE_CAGE || isCageFeasible(grid, cell, cage, cells);
+            }
+            cageValues[i] = grid[cells[i]];
+        }
+        boolean matches = puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), cageValues, cells.length);
+        metrics.cageCheck(cage, !matches);
+        return matches;
+    }
+
+    /**
+     * Checks with the CageOracle whether a partly filled Cage can still reach its target,
+     * given the values still allowed in the rows and columns of its empty Cells.
+     *
+     * @param grid   Values of all Cells
+     * @param placed Index of the Cell just filled (not counted in rowUsed/colUsed yet)
+     * @param cage   Index of the Cage
+     * @param cells  Cells of the Cage
+     * @return true - the target might still be reached, false - otherwise
+     */
+    private boolean isCageFeasible(int[] grid, int placed, int cage, int[] cells) {
+        int all = ((1 << size) - 1) << 1;
+        for (int i = 0; i < cells.length; i++) {
+            int cell = cells[i];
+            if (grid[cell] != 0) {
+                cageMasks[i] = 1 << grid[cell];
+                continue;
+            }
+            int used = rowUsed[cell / size] | colUsed[cell % size];
+            if (cell / size == placed / size || cell % size == placed % size) {
+                used |= 1 << grid[placed];
+            }
+            cageMasks[i] = all & ~used;
+        }
+        boolean feasible = oracle.isFeasible(cage, cageMasks);
+        metrics.cageCheck(cage, !feasible);
+        return feasible;
+    }
+
+    /**
+     * Checks that the values already on the Board don't break any rule.
+     *
+     * @param grid Values of all Cells
+     * @return true - no rule is broken, false - otherwise
+     */
+    private boolean isConsistent(int[] grid) {
+        Arrays.fill(rowUsed, 0);
+        Arrays.fill(colUsed, 0);
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] != 0) {
+                use(cell, grid[cell]);
+            }
+        }
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] != 0 && !isValid(grid, cell)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void use(int cell, int value) {
+        rowUsed[cell / size] |= 1 << value;
+        colUsed[cell % size] |= 1 << value;
+    }
+
+    private void unuse(int cell, int value) {
+        rowUsed[cell / size] &= ~(1 << value);
+        colUsed[cell % size] &= ~(1 << value);
+    }
+
+    @Override
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Solves the given puzzle files and prints the metrics of every run.
+     * <p>
+     * Usage: Solver [--json] puzzleFile...
+     *
+     * @param args Puzzle files, optionally preceded by --json (CSV is printed by default)
+     * @throws IOException Exception is thrown if there is a problem with a puzzle file
+     */
+    public static void main(String[] args) throws IOException {
+        boolean json = args.length > 0 && args[0].equals("--json");
+        if (!json) {
+            System.out.println(SolverMetrics.csvHeader());
+        }
+        for (int i = json ? 1 : 0; i < args.length; i++) {
+            Puzzle puzzle = Puzzle.readFile(args[i]);
+            Solver solver = new Solver(puzzle);
+            solver.solve(new int[puzzle.getSize() * puzzle.getSize()]);
+            if (json) {
+                System.out.println(solver.getMetrics().toJson());
+            } else {
+                System.out.println(solver.getMetrics().toCsv(args[i]));
+            }
+        }
+    }
+}
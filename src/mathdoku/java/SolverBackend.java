@@ -0,0 +1,58 @@
+package mathdoku.java;
+
+/**
+ * SolverBackend is a way of solving a Puzzle that can be chosen at runtime (see SolverEngine).
+ * <p>
+ * The values of the Board are given as an array of NxN integers (index = CellID - 1, 0 - empty Cell).
+ * Every run can be limited by a SolveBudget, so a puzzle with a huge search space can't keep it going forever.
+ */
+public interface SolverBackend {
+
+    /**
+     * Solves the puzzle, starting from the given values, within the given budget.
+     *
+     * @param grid   Values of all Cells, the empty ones are filled in if a solution is found
+     * @param budget The SolveBudget of the run
+     * @return SOLVED, UNSOLVABLE or BUDGET_EXCEEDED (the grid is left as it was unless SOLVED)
+     */
+    SolveResult solve(int[] grid, SolveBudget budget);
+
+    /**
+     * Counts the solutions of the puzzle that agree with the given values, up to the given limit,
+     * within the given budget.
+     *
+     * @param grid   Values of all Cells (left as they are)
+     * @param limit  The search stops once this many solutions are found
+     * @param budget The SolveBudget of the run
+     * @return The number of solutions found (at most limit); if the budget is exceeded, the ones found until then
+     */
+    SolveResult countSolutions(int[] grid, int limit, SolveBudget budget);
+
+    /**
+     * Solves the puzzle, starting from the given values, without a budget.
+     *
+     * @param grid Values of all Cells, the empty ones are filled in if a solution is found
+     * @return true - solved, false - otherwise (the grid is left as it was)
+     */
+    default boolean solve(int[] grid) {
+        return solve(grid, SolveBudget.UNLIMITED).isSolved();
+    }
+
+    /**
+     * Counts the solutions of the puzzle that agree with the given values, up to the given limit, without a budget.
+     *
+     * @param grid  Values of all Cells (left as they are)
+     * @param limit The search stops once this many solutions are found
+     * @return The number of solutions found (at most limit)
+     */
+    default int countSolutions(int[] grid, int limit) {
+        return countSolutions(grid, limit, SolveBudget.UNLIMITED).getSolutions();
+    }
+
+    /**
+     * Returns the metrics of the last run.
+     *
+     * @return The metrics of the last solve or count
+     */
+    SolverMetrics getMetrics();
+}
@@ -0,0 +1,106 @@
+package mathdoku.java;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SolverBenchmark times every SolverEngine on puzzle files, both solving and counting solutions
+ * (up to 2, as for uniqueness checks), and reports the fastest engine per Board size.
+ * It also compares counting with the backtracking Solver with and without a TranspositionTable.
+ * <p>
+ * Usage: SolverBenchmark [puzzleDirectory...]
+ * (the bundled size7x7 and size8x8 puzzles by default)
+ */
+public class SolverBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        List<String> directories = args.length > 0 ? Arrays.asList(args) : Arrays.asList(
+                "src/mathdoku/resources/puzzles/size7x7", "src/mathdoku/resources/puzzles/size8x8");
+
+        List<Path> files = new ArrayList<>();
+        for (String directory : directories) {
+            try (Stream<Path> paths = Files.walk(Paths.get(directory))) {
+                files.addAll(paths.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList()));
+            }
+        }
+
+        //Total time (solve + count) of every engine for every Board size
+        Map<Integer, double[]> totals = new TreeMap<>();
+        SolverEngine[] engines = SolverEngine.values();
+
+        System.out.println("puzzle,engine,solveMs,countMs,solutions,countNodes");
+        for (Path file : files) {
+            Puzzle puzzle = Puzzle.readFile(file.toString());
+            double[] total = totals.computeIfAbsent(puzzle.getSize(), size -> new double[engines.length]);
+            for (int e = 0; e < engines.length; e++) {
+                SolverBackend solver = engines[e].create(puzzle);
+                double solveMs = median(solver, puzzle, false);
+                double countMs = median(solver, puzzle, true);
+                int solutions = solver.countSolutions(new int[puzzle.getSize() * puzzle.getSize()], 2);
+                total[e] += solveMs + countMs;
+                System.out.printf(Locale.ROOT, "%s,%s,%.3f,%.3f,%d,%d%n", file.getFileName(), engines[e],
+                        solveMs, countMs, solutions, solver.getMetrics().getNodes());
+            }
+        }
+
+        System.out.println();
+        for (Map.Entry<Integer, double[]> entry : totals.entrySet()) {
+            int fastest = 0;
+            for (int e = 1; e < engines.length; e++) {
+                if (entry.getValue()[e] < entry.getValue()[fastest]) {
+                    fastest = e;
+                }
+            }
+            System.out.printf(Locale.ROOT, "Fastest for %dx%d: %s (%.3f ms)%n",
+                    entry.getKey(), entry.getKey(), engines[fastest], entry.getValue()[fastest]);
+        }
+
+        System.out.println();
+        System.out.println("puzzle,countNodes,countMs,tableCountNodes,tableCountMs,tableHits,nodesSaved");
+        TranspositionTable table = new TranspositionTable();
+        for (Path file : files) {
+            Puzzle puzzle = Puzzle.readFile(file.toString());
+            Solver plain = new Solver(puzzle);
+            Solver memo = new Solver(puzzle, table);
+            double plainMs = median(plain, puzzle, true);
+            double memoMs = median(memo, puzzle, true);
+            long plainNodes = plain.getMetrics().getNodes();
+            long memoNodes = memo.getMetrics().getNodes();
+            System.out.printf(Locale.ROOT, "%s,%d,%.3f,%d,%.3f,%d,%.1f%%%n", file.getFileName(), plainNodes, plainMs,
+                    memoNodes, memoMs, table.getHits(), 100.0 * (plainNodes - memoNodes) / plainNodes);
+        }
+    }
+
+    /**
+     * Runs the solver a few times and returns the median time of the measured runs.
+     *
+     * @param solver The solver to be timed
+     * @param puzzle The Puzzle to be solved
+     * @param count  true - count solutions (up to 2), false - solve
+     * @return The median time in milliseconds
+     */
+    private static double median(SolverBackend solver, Puzzle puzzle, boolean count) {
+        double[] times = new double[MEASURED_RUNS];
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            int[] grid = new int[puzzle.getSize() * puzzle.getSize()];
+            long start = System.nanoTime();
+            if (count) {
+                solver.countSolutions(grid, 2);
+            } else {
+                solver.solve(grid);
+            }
+            if (run >= WARMUP_RUNS) {
+                times[run - WARMUP_RUNS] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2];
+    }
+}
@@ -0,0 +1,66 @@
+package mathdoku.java;
+
+/**
+ * SolverEngine chooses which SolverBackend solves a Puzzle.
+ */
+public enum SolverEngine {
+    BACKTRACKING("Backtracking"),
+    PROPAGATION("Propagation"),
+    DLX("Dancing Links");
+
+    private final String label;
+
+    SolverEngine(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Creates a new SolverBackend of this engine for the given Puzzle.
+     *
+     * @param puzzle The Puzzle to be solved
+     * @return The SolverBackend
+     */
+    public SolverBackend create(Puzzle puzzle) {
+        switch (this) {
+            case PROPAGATION:
+                return new PropagationSolver(puzzle);
+            case DLX:
+                return new DlxSolver(puzzle);
+            default:
+                return new Solver(puzzle);
+        }
+    }
+
+    /**
+     * Returns the engine that was the fastest for the given size in SolverBenchmark.
+     * Backtracking wins on the small boards, where building the DLX matrix costs more than the search.
+     * From 5x5 up Dancing Links wins on both the bundled 7x7/8x8 puzzles and on generated Hard puzzles,
+     * where backtracking takes seconds to prove uniqueness of an 8x8 board.
+     *
+     * @param size Size of the Square Board NxN as N
+     * @return The fastest engine
+     */
+    public static SolverEngine fastestFor(int size) {
+        return size <= 4 ? BACKTRACKING : DLX;
+    }
+
+    /**
+     * Finds an engine by its label.
+     *
+     * @param label Label of the engine, as shown in the options
+     * @return The engine, or null if no engine has the label
+     */
+    public static SolverEngine fromLabel(String label) {
+        for (SolverEngine engine : values()) {
+            if (engine.label.equals(label)) {
+                return engine;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,59 @@
+package mathdoku.java;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event committed at the end of every Solver run, so solves can be seen in a flight recording
+ * next to GC pauses and the JavaFX thread.
+ */
+@Name("mathdoku.Solve")
+@Label("MathDoku Solve")
+@Category("MathDoku")
+@Description("A run of the MathDoku puzzle solver")
+class SolverEvent extends Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Board Size")
+    int size;
+
+    @Label("Cages")
+    int cages;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Backtracks")
+    long backtracks;
+
+    @Label("Propagations")
+    long propagations;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    /**
+     * Ends the event and commits it with the numbers of the finished run, if JFR is recording it.
+     *
+     * @param engine  Name of the SolverEngine
+     * @param puzzle  The solved Puzzle
+     * @param metrics Metrics of the finished run
+     */
+    void finish(String engine, Puzzle puzzle, SolverMetrics metrics) {
+        end();
+        if (shouldCommit()) {
+            this.engine = engine;
+            this.size = puzzle.getSize();
+            this.cages = puzzle.getCageCount();
+            this.solved = metrics.isSolved();
+            this.nodes = metrics.getNodes();
+            this.backtracks = metrics.getBacktracks();
+            this.propagations = metrics.getPropagations();
+            this.maxDepth = metrics.getMaxDepth();
+            commit();
+        }
+    }
+}
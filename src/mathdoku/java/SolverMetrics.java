@@ -0,0 +1,217 @@
+package mathdoku.java;
+
+import java.util.Locale;
+
+/**
+ * SolverMetrics records what the Solver did during one run, so slow puzzles can be understood:
+ * - nodes: values tried in Cells
+ * - backtracks: values taken back after they led to a dead end
+ * - propagations: constraint checks (a Cell against a row/column, or a full Cage against its target)
+ * - max depth: the largest number of Cells filled in by the Solver at the same time
+ * - wall time of the run, and whether it was stopped by its SolveBudget
+ * - for every Cage, how many times it was checked and how many of those checks pruned the search
+ * <p>
+ * Metrics can be shown as text or dumped as JSON or CSV.
+ */
+public class SolverMetrics {
+    private final Puzzle puzzle;
+    private final long[] cageChecks;
+    private final long[] cagePrunes;
+    private long nodes;
+    private long backtracks;
+    private long propagations;
+    private int maxDepth;
+    private long wallTimeNanos;
+    private boolean solved;
+    private boolean budgetExceeded;
+    private long solutions;
+    private long work; //Nodes and other search work, counted against the budget
+    private long maxNodes = Long.MAX_VALUE;
+    private long deadline = Long.MAX_VALUE;
+
+    public SolverMetrics(Puzzle puzzle) {
+        this.puzzle = puzzle;
+        this.cageChecks = new long[puzzle.getCageCount()];
+        this.cagePrunes = new long[puzzle.getCageCount()];
+    }
+
+    /**
+     * Makes the run stop once it goes over the given budget.
+     *
+     * @param budget The SolveBudget of the run
+     * @param start  The start of the run on the System.nanoTime clock
+     */
+    void limit(SolveBudget budget, long start) {
+        this.maxNodes = budget.getMaxNodes();
+        this.deadline = budget.deadline(start);
+    }
+
+    void node(int depth) {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        step();
+    }
+
+    /**
+     * Counts a piece of work that is not a node (such as a Cage filling for the DLX matrix) against the budget.
+     *
+     * @throws SolveBudget.ExceededException Exception is thrown once the run goes over its budget
+     */
+    void step() {
+        work++;
+        if (work > maxNodes
+                || work % SolveBudget.CLOCK_INTERVAL == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+            throw new SolveBudget.ExceededException();
+        }
+    }
+
+    void solution() {
+        solutions++;
+    }
+
+    void backtrack() {
+        backtracks++;
+    }
+
+    void propagation() {
+        propagations++;
+    }
+
+    void cageCheck(int cage, boolean pruned) {
+        propagations++;
+        cageChecks[cage]++;
+        if (pruned) {
+            cagePrunes[cage]++;
+        }
+    }
+
+    void finish(boolean solved, long wallTimeNanos) {
+        this.solved = solved;
+        this.wallTimeNanos = wallTimeNanos;
+    }
+
+    void finishExceeded(long wallTimeNanos) {
+        this.budgetExceeded = true;
+        finish(false, wallTimeNanos);
+    }
+
+    /**
+     * Shows how often checking the given Cage cut off the search.
+     *
+     * @param cage Index of the Cage
+     * @return Share of the checks of the Cage that pruned the search (0 to 1)
+     */
+    public double getPruningEffectiveness(int cage) {
+        return cageChecks[cage] == 0 ? 0 : (double) cagePrunes[cage] / cageChecks[cage];
+    }
+
+    /**
+     * Header line for the CSV rows made by toCsv.
+     *
+     * @return The CSV header
+     */
+    public static String csvHeader() {
+        return "puzzle,size,cages,solved,nodes,backtracks,propagations,maxDepth,wallTimeMs";
+    }
+
+    /**
+     * Converts the metrics to a CSV row (without the per-Cage numbers).
+     *
+     * @param name Name of the puzzle, for the first column
+     * @return The CSV row
+     */
+    public String toCsv(String name) {
+        return String.format(Locale.ROOT, "%s,%d,%d,%b,%d,%d,%d,%d,%.3f",
+                name, puzzle.getSize(), puzzle.getCageCount(), solved,
+                nodes, backtracks, propagations, maxDepth, getWallTimeMillis());
+    }
+
+    /**
+     * Converts the metrics to a JSON object, including the per-Cage numbers.
+     *
+     * @return The JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{\"size\":%d,\"cages\":%d,\"solved\":%b,\"nodes\":%d,\"backtracks\":%d,"
+                        + "\"propagations\":%d,\"maxDepth\":%d,\"wallTimeMs\":%.3f,\"cagePruning\":[",
+                puzzle.getSize(), puzzle.getCageCount(), solved,
+                nodes, backtracks, propagations, maxDepth, getWallTimeMillis()));
+        for (int i = 0; i < cageChecks.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "{\"cage\":%d,\"target\":\"%s\",\"checks\":%d,\"prunes\":%d}",
+                    i, puzzle.getTarget(i), cageChecks[i], cagePrunes[i]));
+        }
+        return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "Solved:        %b%n", solved));
+        if (budgetExceeded) {
+            text.append(String.format("Budget:        exceeded, the search was stopped%n"));
+        }
+        text.append(String.format(Locale.ROOT, "Wall time:     %.3f ms%n", getWallTimeMillis()));
+        text.append(String.format(Locale.ROOT, "Nodes:         %d%n", nodes));
+        text.append(String.format(Locale.ROOT, "Backtracks:    %d%n", backtracks));
+        text.append(String.format(Locale.ROOT, "Propagations:  %d%n", propagations));
+        text.append(String.format(Locale.ROOT, "Max depth:     %d%n", maxDepth));
+        text.append(String.format("%nCage pruning (checks / prunes):%n"));
+        for (int i = 0; i < cageChecks.length; i++) {
+            text.append(String.format(Locale.ROOT, "  %-6s %10d / %-10d (%.0f%%)%n",
+                    puzzle.getTarget(i), cageChecks[i], cagePrunes[i], getPruningEffectiveness(i) * 100));
+        }
+        return text.toString();
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    public double getWallTimeMillis() {
+        return wallTimeNanos / 1_000_000.0;
+    }
+
+    public boolean isSolved() {
+        return solved;
+    }
+
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    public long getSolutions() {
+        return solutions;
+    }
+
+    public long getCageChecks(int cage) {
+        return cageChecks[cage];
+    }
+
+    public long getCagePrunes(int cage) {
+        return cagePrunes[cage];
+    }
+}
@@ -0,0 +1,177 @@
+package mathdoku.java;
+
+import java.util.Arrays;
+
+/**
+ * TranspositionTable remembers how many solutions the subtrees of a search have, so a subtree reached again
+ * (the same state after a different order of values) is not searched twice. Used by Solver.countSolutions.
+ * <p>
+ * States are identified by two independent 64 bit hashes: the key picks the bucket and the entry, and the check
+ * confirms a hit, so a state whose key collides with another one is a miss rather than taking its count
+ * (both would have to collide, about 1 in 2^128 per lookup).
+ * A count is either exact (the subtree was searched to the end) or a lower bound (the search stopped at its limit),
+ * a lower bound only answers lookups that don't need more.
+ * <p>
+ * The memory is capped: entries live in buckets of 4, and a full bucket evicts with the clock algorithm
+ * (an entry that has been used since the hand last passed it gets a second chance).
+ * Every entry is stamped with the run it belongs to, so clear only has to start a new run
+ * instead of wiping the whole table.
+ */
+public class TranspositionTable {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    //A key, a check, a count, a stamp and a reference bit
+    private static final int ENTRY_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES + 1;
+    private static final int BUCKET_SIZE = 4;
+
+    private final long[] keys;
+    private final long[] checks;
+    private final int[] counts; //count << 1 | 1 if exact
+    private final int[] stamps; //The run of the entry, only entries of the current run are used
+    private final boolean[] referenced;
+    private final byte[] hands;
+    private final int bucketMask;
+    private int entries;
+    private int run = 1;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a TranspositionTable with the default memory cap.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a TranspositionTable that takes at most the given memory (rounded down to a power of two of entries).
+     *
+     * @param maxBytes The memory cap in bytes
+     */
+    public TranspositionTable(long maxBytes) {
+        long entries = Math.max(BUCKET_SIZE, Math.min(1L << 30, maxBytes / ENTRY_BYTES));
+        int buckets = Integer.highestOneBit((int) (entries / BUCKET_SIZE));
+        this.keys = new long[buckets * BUCKET_SIZE];
+        this.checks = new long[buckets * BUCKET_SIZE];
+        this.counts = new int[buckets * BUCKET_SIZE];
+        this.stamps = new int[buckets * BUCKET_SIZE];
+        this.referenced = new boolean[buckets * BUCKET_SIZE];
+        this.hands = new byte[buckets];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Looks up the number of solutions of a state.
+     *
+     * @param key   The hash of the state
+     * @param check A second hash of the state, independent of the key
+     * @param limit The number of solutions wanted
+     * @return The number of solutions (at most limit), or -1 if it's not known well enough
+     */
+    public int get(long key, long check, int limit) {
+        int bucket = bucket(key);
+        for (int slot = bucket; slot < bucket + BUCKET_SIZE; slot++) {
+            if (stamps[slot] == run && keys[slot] == key && checks[slot] == check) {
+                int count = counts[slot] >>> 1;
+                boolean exact = (counts[slot] & 1) != 0;
+                if (exact || count >= limit) {
+                    referenced[slot] = true;
+                    hits++;
+                    return Math.min(count, limit);
+                }
+                break;
+            }
+        }
+        misses++;
+        return -1;
+    }
+
+    /**
+     * Stores the number of solutions of a state.
+     *
+     * @param key   The hash of the state
+     * @param check A second hash of the state, independent of the key
+     * @param count The number of solutions found
+     * @param exact true - all solutions were found, false - the search stopped at its limit
+     *              (an inexact count of 0 tells nothing and is not stored)
+     */
+    public void put(long key, long check, int count, boolean exact) {
+        if (!exact && count == 0) {
+            return;
+        }
+        int bucket = bucket(key);
+        int target = -1;
+        for (int slot = bucket; slot < bucket + BUCKET_SIZE; slot++) {
+            if (stamps[slot] != run || keys[slot] == key && checks[slot] == check) {
+                target = slot;
+                break;
+            }
+        }
+        if (target >= 0 && stamps[target] != run) {
+            entries++;
+        } else if (target < 0) {
+            //Clock: skips (and clears) entries used since the hand last passed them
+            int hand = hands[bucket >>> 2];
+            while (referenced[bucket + hand]) {
+                referenced[bucket + hand] = false;
+                hand = (hand + 1) % BUCKET_SIZE;
+            }
+            target = bucket + hand;
+            hands[bucket >>> 2] = (byte) ((hand + 1) % BUCKET_SIZE);
+            evictions++;
+        }
+        keys[target] = key;
+        checks[target] = check;
+        stamps[target] = run;
+        counts[target] = Math.min(count, Integer.MAX_VALUE >>> 1) << 1 | (exact ? 1 : 0);
+        referenced[target] = true;
+    }
+
+    /**
+     * Forgets all states, for a run on other values.
+     */
+    public void clear() {
+        if (entries > 0) {
+            run++;
+            if (run == 0) {
+                //After 2^32 runs the stamps start again, old ones must not look current
+                Arrays.fill(stamps, 0);
+                run = 1;
+            }
+            entries = 0;
+        }
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the number of states in the table.
+     *
+     * @return The number of entries (at most getCapacity)
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,157 @@
+package mathdoku.java;
+
+/**
+ * ViolationTracker follows the changes of a GameState and keeps the rows, columns and Cages
+ * that currently break a rule, so mistakes can be shown without checking the whole Board again.
+ * <p>
+ * A row or column breaks the rules when a value is repeated in it, a Cage when it's full and misses its target
+ * (the same as Cage.checkCage). A change only updates the counts of one row and one column and checks
+ * the one Cage of the Cell.
+ * <p>
+ * Given a solution, it also keeps the Cells whose value is not the one in the solution.
+ */
+public class ViolationTracker implements GameState.Listener {
+    private final GameState state;
+    private final Puzzle puzzle;
+    private final int size;
+    //Uses of every value, index = row (or column) * (size + 1) + value
+    private final int[] rowCounts;
+    private final int[] colCounts;
+    //Number of repeated values in every row and column
+    private final int[] rowRepeats;
+    private final int[] colRepeats;
+    private final boolean[] cageViolated;
+    private final int[] cageValues;
+    private int[] solution;
+    private boolean[] wrong;
+
+    /**
+     * Creates a ViolationTracker from the current values of a GameState and starts listening to it.
+     *
+     * @param state The GameState to be followed
+     */
+    public ViolationTracker(GameState state) {
+        this.state = state;
+        this.puzzle = state.getPuzzle();
+        this.size = puzzle.getSize();
+        this.rowCounts = new int[size * (size + 1)];
+        this.colCounts = new int[size * (size + 1)];
+        this.rowRepeats = new int[size];
+        this.colRepeats = new int[size];
+        this.cageViolated = new boolean[puzzle.getCageCount()];
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.cageValues = new int[largestCage];
+
+        for (int cell = 0; cell < size * size; cell++) {
+            add(cell, state.getValue(cell));
+        }
+        for (int cage = 0; cage < cageViolated.length; cage++) {
+            updateCage(cage);
+        }
+        state.addListener(this);
+    }
+
+    @Override
+    public void valueChanged(int cell, int oldValue, int newValue) {
+        remove(cell, oldValue);
+        add(cell, newValue);
+        int cage = puzzle.getCageOf(cell);
+        if (cage >= 0) {
+            updateCage(cage);
+        }
+        if (solution != null) {
+            wrong[cell] = newValue != 0 && newValue != solution[cell];
+        }
+    }
+
+    private void add(int cell, int value) {
+        if (value == 0) {
+            return;
+        }
+        if (rowCounts[cell / size * (size + 1) + value]++ > 0) {
+            rowRepeats[cell / size]++;
+        }
+        if (colCounts[cell % size * (size + 1) + value]++ > 0) {
+            colRepeats[cell % size]++;
+        }
+    }
+
+    private void remove(int cell, int value) {
+        if (value == 0) {
+            return;
+        }
+        if (--rowCounts[cell / size * (size + 1) + value] > 0) {
+            rowRepeats[cell / size]--;
+        }
+        if (--colCounts[cell % size * (size + 1) + value] > 0) {
+            colRepeats[cell % size]--;
+        }
+    }
+
+    /**
+     * Checks again whether a Cage is full and misses its target.
+     *
+     * @param cage Index of the Cage
+     */
+    private void updateCage(int cage) {
+        int[] cells = puzzle.getCageCells(cage);
+        boolean full = true;
+        for (int i = 0; i < cells.length && full; i++) {
+            cageValues[i] = state.getValue(cells[i]);
+            full = cageValues[i] != 0;
+        }
+        cageViolated[cage] = full
+                && !puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), cageValues, cells.length);
+    }
+
+    /**
+     * Sets the solution the values are compared with, or null to stop comparing.
+     *
+     * @param solution Values of all Cells in the solution (index = CellID - 1)
+     */
+    public void setSolution(int[] solution) {
+        this.solution = solution;
+        if (solution == null) {
+            wrong = null;
+            return;
+        }
+        wrong = new boolean[size * size];
+        for (int cell = 0; cell < wrong.length; cell++) {
+            int value = state.getValue(cell);
+            wrong[cell] = value != 0 && value != solution[cell];
+        }
+    }
+
+    public boolean isRowViolated(int row) {
+        return rowRepeats[row] > 0;
+    }
+
+    public boolean isColViolated(int col) {
+        return colRepeats[col] > 0;
+    }
+
+    public boolean isCageViolated(int cage) {
+        return cageViolated[cage];
+    }
+
+    /**
+     * Checks whether the value of a Cell is not the one in the solution.
+     *
+     * @param cell Index of the Cell (CellID - 1)
+     * @return true - the Cell is filled with a wrong value, false - it's empty, correct or there is no solution set
+     */
+    public boolean isWrong(int cell) {
+        return wrong != null && wrong[cell];
+    }
+
+    /**
+     * Stops following the GameState.
+     */
+    public void detach() {
+        state.removeListener(this);
+    }
+}
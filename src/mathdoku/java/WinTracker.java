@@ -0,0 +1,137 @@
+package mathdoku.java;
+
+/**
+ * WinTracker follows the changes of a GameState and knows at any time whether the puzzle is solved,
+ * without checking the whole Board again.
+ * <p>
+ * It keeps the number of filled Cells, how many times every value is used in every row and column
+ * (and so the number of repeated values), and which Cages reach their target.
+ * A change only updates the counts of one row and one column and checks the one Cage of the Cell.
+ */
+public class WinTracker implements GameState.Listener {
+    private final GameState state;
+    private final Puzzle puzzle;
+    private final int size;
+    private final Runnable onWin;
+    //Uses of every value, index = row (or column) * (size + 1) + value
+    private final int[] rowCounts;
+    private final int[] colCounts;
+    private final boolean[] cageSolved;
+    private final int[] cageValues;
+    private int filled = 0;
+    private int repeats = 0;
+    private int cagesSolved = 0;
+    private boolean solved;
+
+    /**
+     * Creates a WinTracker from the current values of a GameState and starts listening to it.
+     *
+     * @param state The GameState to be followed
+     * @param onWin Called whenever the puzzle becomes solved (once per time it is completed)
+     */
+    public WinTracker(GameState state, Runnable onWin) {
+        this.state = state;
+        this.puzzle = state.getPuzzle();
+        this.size = puzzle.getSize();
+        this.onWin = onWin;
+        this.rowCounts = new int[size * (size + 1)];
+        this.colCounts = new int[size * (size + 1)];
+        this.cageSolved = new boolean[puzzle.getCageCount()];
+
+        int largestCage = 1;
+        for (int i = 0; i < puzzle.getCageCount(); i++) {
+            largestCage = Math.max(largestCage, puzzle.getCageCells(i).length);
+        }
+        this.cageValues = new int[largestCage];
+
+        for (int cell = 0; cell < size * size; cell++) {
+            add(cell, state.getValue(cell));
+        }
+        for (int cage = 0; cage < cageSolved.length; cage++) {
+            updateCage(cage);
+        }
+        this.solved = isComplete();
+        state.addListener(this);
+    }
+
+    @Override
+    public void valueChanged(int cell, int oldValue, int newValue) {
+        remove(cell, oldValue);
+        add(cell, newValue);
+        int cage = puzzle.getCageOf(cell);
+        if (cage >= 0) {
+            updateCage(cage);
+        }
+
+        boolean wasSolved = solved;
+        solved = isComplete();
+        if (solved && !wasSolved && onWin != null) {
+            onWin.run();
+        }
+    }
+
+    private void add(int cell, int value) {
+        if (value == 0) {
+            return;
+        }
+        filled++;
+        if (rowCounts[cell / size * (size + 1) + value]++ > 0) {
+            repeats++;
+        }
+        if (colCounts[cell % size * (size + 1) + value]++ > 0) {
+            repeats++;
+        }
+    }
+
+    private void remove(int cell, int value) {
+        if (value == 0) {
+            return;
+        }
+        filled--;
+        if (--rowCounts[cell / size * (size + 1) + value] > 0) {
+            repeats--;
+        }
+        if (--colCounts[cell % size * (size + 1) + value] > 0) {
+            repeats--;
+        }
+    }
+
+    /**
+     * Checks again whether a Cage is full and reaches its target.
+     *
+     * @param cage Index of the Cage
+     */
+    private void updateCage(int cage) {
+        int[] cells = puzzle.getCageCells(cage);
+        boolean reached = true;
+        for (int i = 0; i < cells.length && reached; i++) {
+            cageValues[i] = state.getValue(cells[i]);
+            reached = cageValues[i] != 0;
+        }
+        reached = reached && puzzle.getOperator(cage).matches(puzzle.getTargetValue(cage), cageValues, cells.length);
+        if (reached != cageSolved[cage]) {
+            cageSolved[cage] = reached;
+            cagesSolved += reached ? 1 : -1;
+        }
+    }
+
+    private boolean isComplete() {
+        return filled == size * size && repeats == 0 && cagesSolved == cageSolved.length;
+    }
+
+    /**
+     * Checks whether the puzzle is solved, in constant time.
+     *
+     * @return true - every Cell is filled and no rule is broken, false - otherwise
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Stops following the GameState.
+     */
+    public void detach() {
+        state.removeListener(this);
+    }
+}